@@ -0,0 +1,147 @@
+// AttackTreeBench measures the deck operations one at a time on a prebuilt deck of n cards.
+// The priority searches delete the card they find, so every found card is inserted back
+// to keep the deck the same for the next query: a score is search + delete + insert.
+// The RecursiveAttackTree.* cases run the same operations on the recursive baseline tree (search, delete, insert),
+// the *.reinsert cases put the card back with reinsert, the way a battle does when the card survives.
+public class AttackTreeBench extends Benchmark {
+    static final int BATCH = 1 << 14;
+
+    enum Op { INSERT_DELETE, FIRST, SECOND, THIRD, FOURTH, STEAL }
+
+    private final Op op;
+    private final boolean recursive;
+    private final boolean reinsert;
+    private AttackTree deck;
+    private RecursiveAttackTree baseline;
+    private Card[] extra;
+    private int[] extraHandles;
+    private int[] queries;
+
+    AttackTreeBench(String name, Op op, boolean recursive, boolean reinsert) {
+        super(name);
+        this.op = op;
+        this.recursive = recursive;
+        this.reinsert = reinsert;
+    }
+
+    static Benchmark[] all() {
+        String[] names = {"insertDelete", "firstPriority", "secondPriority", "thirdPriority", "fourthPriority", "stealCard"};
+        Op[] ops = Op.values();
+        Benchmark[] all = new Benchmark[3 * ops.length - 1];
+        for (int i = 0; i < ops.length; i++) {
+            all[i] = new AttackTreeBench("AttackTree." + names[i], ops[i], false, false);
+            all[ops.length + i] = new AttackTreeBench("RecursiveAttackTree." + names[i], ops[i], true, false);
+        }
+        // Every op but insertDelete takes a card
+        for (int i = 1; i < ops.length; i++) {
+            all[2 * ops.length + i - 1] = new AttackTreeBench("AttackTree." + names[i] + ".reinsert", ops[i], false, true);
+        }
+        return all;
+    }
+
+    @Override
+    void setup(int size, Distribution dist, long seed) {
+        if (recursive) {
+            baseline = new RecursiveAttackTree();
+            for (Card card : DeckGenerator.deck(size, dist, seed)) {
+                baseline.insert(card);
+            }
+        } else {
+            CardStore store = new CardStore(size + BATCH);
+            deck = new AttackTree(store);
+            for (int card : DeckGenerator.add(store, DeckGenerator.deck(size, dist, seed))) {
+                deck.insert(card);
+            }
+            extraHandles = DeckGenerator.add(store, DeckGenerator.deck(BATCH, dist, seed + 1));
+        }
+        extra = DeckGenerator.deck(BATCH, dist, seed + 1);
+        queries = DeckGenerator.battles(BATCH, size, dist, seed + 2);
+    }
+
+    @Override
+    long run() {
+        if (recursive) {
+            return runRecursive();
+        }
+        AttackTree deck = this.deck;
+        int[] queries = this.queries;
+        for (int i = 0; i < BATCH; i++) {
+            int att = queries[3 * i];
+            int hp = queries[3 * i + 1];
+            int card;
+            switch (op) {
+                case INSERT_DELETE:
+                    deck.insert(extraHandles[i]);
+                    deck.delete(extraHandles[i]);
+                    continue;
+                case FIRST:
+                    card = deck.firstPriority(att, hp);
+                    break;
+                case SECOND:
+                    card = deck.secondPriority(att, hp);
+                    break;
+                case THIRD:
+                    card = deck.thirdPriority(att, hp);
+                    break;
+                case FOURTH:
+                    card = deck.fourthPriority(att, hp);
+                    break;
+                default:
+                    card = deck.stealCard(hp, att);
+            }
+            if (card != CardStore.NONE) {
+                if (reinsert) {
+                    deck.reinsert(card);
+                } else {
+                    deck.insert(card);
+                }
+            }
+            consume(card);
+        }
+        return BATCH;
+    }
+
+    private long runRecursive() {
+        RecursiveAttackTree deck = this.baseline;
+        int[] queries = this.queries;
+        for (int i = 0; i < BATCH; i++) {
+            int att = queries[3 * i];
+            int hp = queries[3 * i + 1];
+            Card card;
+            switch (op) {
+                case INSERT_DELETE:
+                    deck.insert(extra[i]);
+                    deck.delete(extra[i]);
+                    continue;
+                case FIRST:
+                    card = deck.firstPriority(att, hp);
+                    break;
+                case SECOND:
+                    card = deck.secondPriority(att, hp);
+                    break;
+                case THIRD:
+                    card = deck.thirdPriority(att, hp);
+                    break;
+                case FOURTH:
+                    card = deck.fourthPriority(att, hp);
+                    break;
+                default:
+                    card = deck.stealCard(hp, att);
+            }
+            if (card != null) {
+                deck.insert(card);
+            }
+            consume(card);
+        }
+        return BATCH;
+    }
+
+    @Override
+    void tearDown() {
+        deck = null;
+        baseline = null;
+        extra = null;
+        extraHandles = null;
+        queries = null;
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.*;
+
+// BattleBench replays whole games end to end.
+// Main.battle: a deck of n cards is drawn into a new session outside the timed region, then a fixed list of battles is played.
+// Main.commandLoop: Main.main runs over a generated encounter file (n draws followed by n / 2 commands),
+// so it also measures the parsing and the output formatting.
+// Main.battle.pooled plays the same battles on a session whose trees recycle their nodes through a NodePool.
+// Main.commandLoop.pipeline plays the same file through the Pipeline, parsing and formatting on their own threads.
+public class BattleBench extends Benchmark {
+    static final int BATTLES = 1 << 14;
+
+    private final boolean commandLoop;
+    private final boolean pooled;
+    private final boolean pipelined;
+    private Card[] deck;
+    private int[] battles;
+    private File input;
+    private File output;
+    private long lines;
+    private GameSession session;
+    // Battle results are still formatted, into a writer that drops them
+    private final OutputWriter out = new OutputWriter(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+
+    BattleBench(String name, boolean commandLoop, boolean pooled) {
+        this(name, commandLoop, pooled, false);
+    }
+
+    BattleBench(String name, boolean commandLoop, boolean pooled, boolean pipelined) {
+        super(name);
+        this.commandLoop = commandLoop;
+        this.pooled = pooled;
+        this.pipelined = pipelined;
+    }
+
+    static Benchmark[] all() {
+        return new Benchmark[] {
+            new BattleBench("Main.battle", false, false),
+            new BattleBench("Main.battle.pooled", false, true),
+            new BattleBench("Main.commandLoop", true, false),
+            new BattleBench("Main.commandLoop.pipeline", true, false, true),
+        };
+    }
+
+    @Override
+    void setup(int size, Distribution dist, long seed) {
+        deck = DeckGenerator.deck(size, dist, seed);
+        if (!commandLoop) {
+            battles = DeckGenerator.battles(BATTLES, size, dist, seed + 2);
+            return;
+        }
+        try {
+            input = File.createTempFile("nightpass-bench", ".txt");
+            output = File.createTempFile("nightpass-bench", ".out");
+            input.deleteOnExit();
+            output.deleteOnExit();
+            lines = DeckGenerator.writeEncounter(input, deck, DeckGenerator.battles(size / 2, size, dist, seed + 2));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        deck = null;
+    }
+
+    @Override
+    void beforeIteration() {
+        if (!commandLoop) {
+            session = new GameSession(pooled);
+            for (Card card : deck) {
+                session.drawCard(card.name, card.baseAtt, card.baseHp);
+            }
+        }
+    }
+
+    @Override
+    long run() {
+        if (pipelined) {
+            try (CommandReader reader = new CommandReader(new FileInputStream(input));
+                 OutputWriter writer = new OutputWriter(new FileOutputStream(output).getChannel())) {
+                Pipeline.run(new GameSession(), reader, writer, null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return lines;
+        }
+        if (commandLoop) {
+            // Main prints "end" when it is done, keep it out of the report
+            PrintStream report = System.out;
+            System.setOut(new PrintStream(new ByteArrayOutputStream()));
+            try {
+                Main.main(new String[] {input.getPath(), output.getPath()});
+            } finally {
+                System.setOut(report);
+            }
+            return lines;
+        }
+        int[] battles = this.battles;
+        try {
+            for (int i = 0; i < BATTLES; i++) {
+                Main.battle(session, battles[3 * i], battles[3 * i + 1], battles[3 * i + 2], out);
+                out.newLine();
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        consume(session.survivorPoint);
+        return BATTLES;
+    }
+
+    @Override
+    void tearDown() {
+        deck = null;
+        battles = null;
+        if (input != null) {
+            input.delete();
+            output.delete();
+        }
+        session = null;
+    }
+}
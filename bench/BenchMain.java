@@ -0,0 +1,175 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * Benchmark runner for the Nightpass trees and the command loop.
+ *
+ * Every case runs over seeded synthetic decks, so two runs with the same flags
+ * see exactly the same cards and the same Stranger encounters.
+ *
+ * USAGE (from the bench/ folder):
+ * ===============================
+ *
+ * javac -encoding UTF-8 -d out ../src/*.java *.java
+ * java -Xmx4g -cp out BenchMain [filter...] [options]
+ *
+ * filter              Only run the cases whose name contains one of the filters,
+ *                     e.g. "AttackTree." or "firstPriority"
+ * --sizes 1e3,1e4     Deck sizes (default 1e3,1e4,1e5,1e6), 1e7 needs about -Xmx8g;
+ *                     for the Replay.* cases the number of commands of the encounter
+ * --dists uniform     Distributions: uniform, skewed, adversarial, straddling (default all)
+ * --seed 42           Seed of the generated decks
+ * --warmup 5          Warm-up iterations per case
+ * --iterations 10     Measured iterations per case
+ *
+ * Scores are the mean time of one operation over the measured iterations, with the
+ * standard deviation between iterations as the error. Alloc is the mean number of bytes the
+ * benchmark thread allocated per operation (what JMH's gc profiler reports as gc.alloc.rate.norm),
+ * -1 when the JVM cannot count it.
+ */
+public class BenchMain {
+    private static final java.lang.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        String[] filters = new String[args.length];
+        int filterCount = 0;
+        int[] sizes = {1000, 10000, 100000, 1000000};
+        Distribution[] dists = Distribution.values();
+        long seed = 42;
+        int warmup = 5;
+        int iterations = 10;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes": {
+                    String[] parts = args[++i].split(",");
+                    sizes = new int[parts.length];
+                    for (int j = 0; j < parts.length; j++) {
+                        sizes[j] = (int) Double.parseDouble(parts[j]);
+                    }
+                    break;
+                }
+                case "--dists": {
+                    String[] parts = args[++i].split(",");
+                    dists = new Distribution[parts.length];
+                    for (int j = 0; j < parts.length; j++) {
+                        dists[j] = Distribution.parse(parts[j]);
+                    }
+                    break;
+                }
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    filters[filterCount++] = args[i];
+            }
+        }
+
+        System.out.printf("%-40s %-12s %10s %14s %12s %14s %12s%n",
+            "Benchmark", "Dist", "Size", "Score(ns/op)", "Error", "ops/s", "Alloc(B/op)");
+        for (Benchmark benchmark : cases()) {
+            if (!matches(benchmark.name, filters, filterCount)) {
+                continue;
+            }
+            for (int size : sizes) {
+                for (Distribution dist : dists) {
+                    measure(benchmark, size, dist, seed, warmup, iterations);
+                }
+            }
+        }
+        // Printing the sink keeps every benchmarked result alive
+        System.out.println("# sink " + Benchmark.sink);
+    }
+
+    static Benchmark[] cases() {
+        Benchmark[][] groups = {
+            AttackTreeBench.all(),
+            HealthTreeBench.all(),
+            BattleBench.all(),
+            ReviveBench.all(),
+            OpeningBench.all(),
+            ReplayBench.all(),
+            SnapshotBench.all(),
+            ForkBench.all(),
+            QueryBench.all(),
+            StealBench.all(),
+        };
+        int count = 0;
+        for (Benchmark[] group : groups) {
+            count += group.length;
+        }
+        Benchmark[] all = new Benchmark[count];
+        int index = 0;
+        for (Benchmark[] group : groups) {
+            for (Benchmark benchmark : group) {
+                all[index++] = benchmark;
+            }
+        }
+        return all;
+    }
+
+    private static boolean matches(String name, String[] filters, int filterCount) {
+        if (filterCount == 0) {
+            return true;
+        }
+        for (int i = 0; i < filterCount; i++) {
+            if (name.contains(filters[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void measure(Benchmark benchmark, int size, Distribution dist, long seed,
+                                int warmup, int iterations) {
+        benchmark.setup(size, dist, seed);
+        for (int i = 0; i < warmup; i++) {
+            benchmark.beforeIteration();
+            benchmark.run();
+        }
+
+        double[] scores = new double[iterations];
+        long allocated = 0;
+        long totalOps = 0;
+        for (int i = 0; i < iterations; i++) {
+            benchmark.beforeIteration();
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            long ops = benchmark.run();
+            long elapsed = System.nanoTime() - start;
+            allocated += allocatedBytes() - bytes;
+            totalOps += ops;
+            scores[i] = (double) elapsed / Math.max(1, ops);
+        }
+        double alloc = allocatedBytes() < 0 ? -1 : (double) allocated / Math.max(1, totalOps);
+        benchmark.tearDown();
+        System.gc();
+
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= iterations;
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double error = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+
+        System.out.printf("%-40s %-12s %10d %14.1f %12.1f %14.0f %12.1f%n",
+            benchmark.name, dist.name().toLowerCase(), size, mean, error, 1e9 / mean, alloc);
+    }
+
+    // Bytes allocated by the current thread so far, -1 if the JVM does not count them
+    private static long allocatedBytes() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,37 @@
+// Benchmark is the base class of every benchmark case in this folder.
+// A case is set up once for every (size, distribution) pair, then BenchMain calls
+// beforeIteration() outside the timed region and times a single run() call per iteration.
+public abstract class Benchmark {
+    // Results of the benchmarked calls are folded in here so the JIT cannot drop them
+    static long sink;
+
+    final String name;
+
+    Benchmark(String name) {
+        this.name = name;
+    }
+
+    // Build the data structures for the given deck size and distribution
+    abstract void setup(int size, Distribution dist, long seed);
+
+    // Restore the state that run() consumes, not timed
+    void beforeIteration() {
+    }
+
+    // One timed invocation, returns the number of operations it performed
+    abstract long run();
+
+    // Drop the references of the previous setup so the next size does not run out of heap
+    void tearDown() {
+    }
+
+    static void consume(Card card) {
+        if (card != null) {
+            sink += card.curHp;
+        }
+    }
+
+    static void consume(long value) {
+        sink += value;
+    }
+}
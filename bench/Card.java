@@ -1,4 +1,5 @@
-// Card class creates a card in the game and stores necessary information about the card.
+// Card is the object form of a card, as the game kept it before the CardStore: the recursive baseline trees
+// and the deck generator work on it, and the benchmarks copy its stats into a CardStore for the current trees.
 public class Card {
     String name;
     int baseAtt;
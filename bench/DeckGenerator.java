@@ -0,0 +1,168 @@
+import java.io.*;
+import java.util.Random;
+
+// DeckGenerator builds seeded synthetic decks and encounters, so every run of a benchmark sees the same input.
+public class DeckGenerator {
+
+    // Stats of n cards, drawn from the given distribution
+    public static Card[] deck(int n, Distribution dist, long seed) {
+        Random random = new Random(seed);
+        Card[] cards = new Card[n];
+        for (int i = 0; i < n; i++) {
+            cards[i] = card(random, "c" + i, n, dist, i);
+        }
+        return cards;
+    }
+
+    public static Card card(Random random, String name, int n, Distribution dist, int i) {
+        int att;
+        int hp;
+        switch (dist) {
+            case SKEWED: {
+                // Squaring pushes most of the values to the low end, 32 attack and 64 health values in total
+                double a = random.nextDouble();
+                double h = random.nextDouble();
+                att = 1 + (int) (32 * a * a);
+                hp = 1 + (int) (64 * h * h);
+                break;
+            }
+            case ADVERSARIAL: {
+                // 7 of 8 cards hit hard but die to anything, the rest are weak but very healthy
+                if (i % 8 != 0) {
+                    att = n + random.nextInt(n);
+                    hp = 1 + random.nextInt(4);
+                } else {
+                    att = 1 + random.nextInt(n / 8 + 1);
+                    hp = n + random.nextInt(n);
+                }
+                break;
+            }
+            case STRADDLING: {
+                // Healthy below the middle attack, fragile above it, and one strong card past all of them
+                att = 1 + random.nextInt(n);
+                hp = att <= n / 2 ? n + random.nextInt(n) : 1 + random.nextInt(4);
+                if (i == 0) {
+                    att = 2 * n;
+                    hp = 2 * n;
+                }
+                break;
+            }
+            default: {
+                att = 1 + random.nextInt(n);
+                hp = 1 + random.nextInt(n);
+            }
+        }
+        return new Card(name, att, hp);
+    }
+
+    // Stranger stats for count battles, stored as att, hp, heal triples
+    public static int[] battles(int count, int n, Distribution dist, long seed) {
+        Random random = new Random(seed);
+        int[] battles = new int[count * 3];
+        for (int i = 0; i < count; i++) {
+            int att;
+            int hp;
+            int heal;
+            switch (dist) {
+                case SKEWED: {
+                    att = 1 + random.nextInt(64);
+                    hp = 1 + random.nextInt(32);
+                    heal = random.nextInt(64);
+                    break;
+                }
+                case ADVERSARIAL: {
+                    // Kills every high attack card, but is too healthy for the weak ones to kill
+                    att = 4 + random.nextInt(n / 2 + 1);
+                    hp = n / 8 + 1 + random.nextInt(n - n / 8 + 1);
+                    heal = random.nextInt(8);
+                    break;
+                }
+                case STRADDLING: {
+                    // Kills every card above the middle attack, and is too healthy for the ones below it to kill
+                    att = 4 + random.nextInt(n / 2 + 1);
+                    hp = n / 2 + 1 + random.nextInt(n / 2 + 1);
+                    heal = random.nextInt(8);
+                    break;
+                }
+                default: {
+                    att = 1 + random.nextInt(n);
+                    hp = 1 + random.nextInt(n);
+                    heal = random.nextInt(n + 1);
+                }
+            }
+            battles[3 * i] = att;
+            battles[3 * i + 1] = hp;
+            battles[3 * i + 2] = heal;
+        }
+        return battles;
+    }
+
+    // Fresh copies, battles change the stats of the cards they play
+    public static Card[] copy(Card[] cards) {
+        Card[] copy = new Card[cards.length];
+        for (int i = 0; i < cards.length; i++) {
+            copy[i] = new Card(cards[i].name, cards[i].baseAtt, cards[i].baseHp);
+        }
+        return copy;
+    }
+
+    // Copy the cards into the store as they are, returns their handles in the same order
+    public static int[] add(CardStore store, Card[] cards) {
+        int[] handles = new int[cards.length];
+        for (int i = 0; i < cards.length; i++) {
+            Card card = cards[i];
+            int handle = store.add(card.name, card.baseAtt, card.baseHp);
+            store.curAtt[handle] = card.curAtt;
+            store.curHp[handle] = card.curHp;
+            store.missingHp[handle] = card.missingHp;
+            handles[i] = handle;
+        }
+        return handles;
+    }
+
+    // Cards as they are after being killed, for the discard pile
+    public static Card[] discarded(Card[] cards) {
+        Card[] discarded = copy(cards);
+        for (Card card : discarded) {
+            card.takeDamage(card.curHp);
+        }
+        return discarded;
+    }
+
+    // Encounter file in the format Main reads: the deck is drawn first, then the battles start.
+    // Every 16th command is a steal or a count query so the whole command set is exercised.
+    public static int writeEncounter(File file, Card[] deck, int[] battles) throws IOException {
+        int lines = 0;
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
+            for (Card card : deck) {
+                bw.write("draw_card " + card.name + " " + card.baseAtt + " " + card.baseHp);
+                bw.newLine();
+                lines++;
+            }
+            for (int i = 0; i < battles.length / 3; i++) {
+                int att = battles[3 * i];
+                int hp = battles[3 * i + 1];
+                int heal = battles[3 * i + 2];
+                switch (i % 16) {
+                    case 5:
+                        bw.write("steal_card " + hp + " " + att);
+                        break;
+                    case 10:
+                        bw.write("deck_count");
+                        break;
+                    case 12:
+                        bw.write("discard_pile_count");
+                        break;
+                    case 15:
+                        bw.write("find_winning");
+                        break;
+                    default:
+                        bw.write("battle " + att + " " + hp + " " + heal);
+                }
+                bw.newLine();
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
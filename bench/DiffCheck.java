@@ -0,0 +1,502 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+// DiffCheck runs the same random games on the AttackTree and on RecursiveAttackTree, and stops at the first
+// search where they pick different cards. Every search the deck has is checked, with the played cards damaged
+// and put back the way a battle does. Small stat ranges give long queues and many equal keys,
+// the large ones deep trees. A quarter of every range is 0 or less, the game takes any int and the trees must not
+// mistake a card with no health left for an empty subtree.
+// Along the way countCards and kthStrongest are compared with a scan of the cards in the deck: counts at random
+// limits and at the stats of cards in it, and every place of the deck order with a few past its end.
+// Then the same random encounters are played on a GameSession and a PersistentSession, compared after every
+// command; halfway through both are forked (Snapshot.fork for the GameSession), the forks play one continuation
+// and then the originals another, so a fork that changed its parent would show up as a difference.
+// Then a GameSession is saved and restored through Snapshot.fork, and the game and its fork play the same commands,
+// their results are compared after every command and their snapshots at the fork and at the end. The small ranges
+// leave long queues of equal stats in the deck and in the discard pile, which have to come back in the same order.
+// Last the Stranger's raids: every now and then a game is forked and stealAll on the game has to take the same
+// cards in the same order as stealCard on the fork until it finds nothing, and leave the same deck behind.
+// And the smallest first fire phase: cards are killed into a discard pile and revived by reviveSmallestFirst,
+// next to a plain list of the pile sorted by missing health and arrival, revived the obvious way: the first card
+// while it fits, then what is left of the heal on the next one. At the end the pile is emptied and compared.
+// Then encounter files whose opening draws end in a line that cannot be read: Main.run fails there, and the game
+// it leaves must save the same snapshot as one that drew those cards, the opening has to be in its deck.
+// Run it with -Dnightpass.bulkload=true too, the opening is only held back from the deck with the bulk load.
+//
+// Usage: java -cp out DiffCheck [games] [steps]
+public class DiffCheck {
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        long searches = 0;
+        for (int seed = 0; seed < games; seed++) {
+            searches += game(seed, steps);
+        }
+        System.out.println(games + " games, " + searches + " searches, no difference");
+        long commands = 0;
+        for (int seed = 0; seed < games; seed++) {
+            commands += sessions(seed, steps);
+        }
+        System.out.println(games + " persistent games, " + commands + " commands, no difference");
+        commands = 0;
+        for (int seed = 0; seed < games; seed++) {
+            commands += forks(seed, steps);
+        }
+        System.out.println(games + " forked games, " + commands + " commands, no difference");
+        long stolen = 0;
+        for (int seed = 0; seed < games; seed++) {
+            stolen += raids(seed, steps);
+        }
+        System.out.println(games + " raided games, " + stolen + " cards stolen, no difference");
+        long revived = 0;
+        for (int seed = 0; seed < games; seed++) {
+            revived += revivals(seed, steps);
+        }
+        System.out.println(games + " revived games, " + revived + " cards revived, no difference");
+        long drawn = 0;
+        for (int seed = 0; seed < games; seed++) {
+            drawn += openings(seed);
+        }
+        System.out.println(games + " broken openings, " + drawn + " cards drawn, no difference");
+    }
+
+    // The lines an opening may break at: a bad number, a missing argument, and a bad number in a draw
+    private static final String[] BROKEN = {"battle 1 x 3", "steal_card 1", "draw_card broken 5 x"};
+
+    // Returns the number of cards drawn before the broken line, exits on the first difference
+    private static long openings(long seed) {
+        Random random = new Random(seed);
+        int range = seed % 2 == 0 ? 2 + random.nextInt(8) : 16 + random.nextInt(4096);
+        int draws = random.nextInt(300);
+        GameSession expected = new GameSession();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < draws; i++) {
+            int att = stat(random, range);
+            int hp = health(stat(random, range));
+            expected.drawCard("o" + i, att, hp);
+            text.append("draw_card o").append(i).append(' ').append(att).append(' ').append(hp).append('\n');
+        }
+        text.append(BROKEN[(int) (seed % BROKEN.length)]).append('\n').append("deck_count\n");
+
+        GameSession game = new GameSession();
+        try {
+            Main.run(game, new CommandReader(new ByteArrayInputStream(text.toString().getBytes())),
+                    new OutputWriter(new ByteArrayOutputStream()));
+            System.out.println("broken opening " + seed + ": the game did not fail");
+            System.exit(1);
+        } catch (IOException | RuntimeException e) {
+            // Where the text replay stops
+        }
+        compareSnapshots(expected, game, "broken opening " + seed + " of " + draws + " cards");
+        return draws;
+    }
+
+    // Returns the number of cards revived, exits on the first difference
+    private static long revivals(long seed, int steps) {
+        Random random = new Random(seed);
+        int range = seed % 2 == 0 ? 2 + random.nextInt(8) : 16 + random.nextInt(4096);
+        GameSession game = new GameSession();
+        final CardStore store = game.cards;
+        // The pile as a list, and the arrival of every card in it
+        final int[] arrived = new int[steps];
+        ArrayList<Integer> pile = new ArrayList<>();
+        Comparator<Integer> order = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if (store.missingHp(a) != store.missingHp(b)) {
+                    return Integer.compare(store.missingHp(a), store.missingHp(b));
+                }
+                return Integer.compare(arrived[a], arrived[b]);
+            }
+        };
+        long revived = 0;
+        for (int step = 0; step < steps; step++) {
+            if (random.nextInt(10) < 7) {
+                // A card killed straight into the pile, its missing health is its base health
+                int card = store.add("r" + step, 1 + random.nextInt(range), health(stat(random, range)));
+                store.takeDamage(card, Integer.MAX_VALUE);
+                game.discardPile.insert(card);
+                arrived[card] = step;
+                pile.add(card);
+                continue;
+            }
+            int heal = random.nextInt(8) == 0 ? random.nextInt(64 * range) : stat(random, 4 * range);
+            // The reference: fully revive the least missing health while it fits, then partially the next one
+            Collections.sort(pile, order);
+            int expected = 0;
+            int left = heal;
+            if (heal > 0) {
+                while (expected < pile.size() && store.missingHp(pile.get(expected)) <= left) {
+                    left -= store.missingHp(pile.get(expected));
+                    expected++;
+                }
+            }
+            int partial = heal > 0 && left > 0 && expected < pile.size() ? pile.get(expected) : CardStore.NONE;
+            int partialMissing = partial == CardStore.NONE ? 0 : store.missingHp(partial) - left;
+            int[] revivedCards = new int[expected];
+            for (int i = 0; i < expected; i++) {
+                revivedCards[i] = pile.get(i);
+            }
+            pile.subList(0, expected).clear();
+
+            int found = game.reviveSmallestFirst(heal);
+            String where = "revived game " + seed + " step " + step + " heal " + heal;
+            if (found != expected || game.deckCount() != revived + expected || game.discardPileCount() != pile.size()) {
+                System.out.println(where + ": " + found + " cards revived instead of " + expected + ", deck "
+                        + game.deckCount() + ", pile " + game.discardPileCount() + " instead of " + pile.size());
+                System.exit(1);
+            }
+            for (int card : revivedCards) {
+                if (store.missingHp(card) != 0 || store.curHp[card] != store.baseHp[card]) {
+                    System.out.println(where + ": " + store.name(card) + " is not fully revived");
+                    System.exit(1);
+                }
+            }
+            if (partial != CardStore.NONE) {
+                if (store.missingHp(partial) != partialMissing) {
+                    System.out.println(where + ": " + store.name(partial) + " misses " + store.missingHp(partial)
+                            + " instead of " + partialMissing);
+                    System.exit(1);
+                }
+                // It went back to the end of its queue
+                arrived[partial] = step;
+            }
+            revived += expected;
+        }
+        // Empty the pile, least missing health first, first in first
+        Collections.sort(pile, order);
+        for (int i = 0; i < pile.size(); i++) {
+            int card = game.discardPile.pollMinHp();
+            if (card != pile.get(i)) {
+                System.out.println("revived game " + seed + ": place " + i + " of the pile is "
+                        + (card == CardStore.NONE ? "no card" : store.name(card)) + " instead of "
+                        + store.name(pile.get(i)));
+                System.exit(1);
+            }
+        }
+        return revived;
+    }
+
+    // Returns the number of cards stolen, exits on the first difference
+    private static long raids(long seed, int steps) {
+        Random random = new Random(seed);
+        int range = seed % 2 == 0 ? 2 + random.nextInt(8) : 16 + random.nextInt(4096);
+        GameSession game = new GameSession(seed % 3 == 0);
+        long stolen = 0;
+        for (int step = 0; step < steps; step++) {
+            if (step % 128 != 127) {
+                command(game, random, range, "" + step);
+                continue;
+            }
+            int attackLimit = stat(random, range);
+            int healthLimit = stat(random, range);
+            GameSession fork = Snapshot.fork(game);
+            int count = game.stealAll(attackLimit, healthLimit);
+            int[] cards = game.deck.stolen();
+            for (int i = 0; i < count; i++) {
+                int card = fork.stealCard(attackLimit, healthLimit);
+                String expected = card == CardStore.NONE ? "no card" : fork.cards.name(card);
+                if (!game.cards.name(cards[i]).equals(expected)) {
+                    System.out.println("raided game " + seed + " step " + step + ": card " + i + " stolen is "
+                            + game.cards.name(cards[i]) + " instead of " + expected);
+                    System.exit(1);
+                }
+            }
+            if (fork.stealCard(attackLimit, healthLimit) != CardStore.NONE) {
+                System.out.println("raided game " + seed + " step " + step + ": " + count + " cards stolen, "
+                        + "stealCard finds more");
+                System.exit(1);
+            }
+            compareSnapshots(fork, game, "raided game " + seed + " step " + step);
+            stolen += count;
+        }
+        return stolen;
+    }
+
+    // Returns the number of commands compared, exits on the first difference
+    private static long forks(long seed, int steps) {
+        Random random = new Random(seed);
+        int range = seed % 2 == 0 ? 2 + random.nextInt(8) : 16 + random.nextInt(4096);
+        GameSession game = new GameSession();
+        for (int step = 0; step < steps / 2; step++) {
+            command(game, random, range, "" + step);
+        }
+        GameSession fork = Snapshot.fork(game);
+        compareSnapshots(game, fork, "forked game " + seed + " at the fork");
+        // The same commands on both
+        Random gameCommands = new Random(seed + 1);
+        Random forkCommands = new Random(seed + 1);
+        for (int step = steps / 2; step < steps; step++) {
+            String expected = command(game, gameCommands, range, "" + step);
+            String found = command(fork, forkCommands, range, "" + step);
+            if (!found.equals(expected)) {
+                System.out.println("forked game " + seed + " step " + step + ": " + found + " instead of " + expected);
+                System.exit(1);
+            }
+        }
+        compareSnapshots(game, fork, "forked game " + seed + " at the end");
+        return steps - steps / 2;
+    }
+
+    // Play a random command on the game, returns its result and the sizes of the deck and the discard pile
+    private static String command(GameSession game, Random random, int range, String name) {
+        int op = random.nextInt(8);
+        int att = stat(random, range);
+        int hp = stat(random, range);
+        String result;
+        if (op < 3) {
+            game.drawCard(name, att, health(hp));
+            result = "added";
+        } else if (op < 7) {
+            // A Stranger stronger than any card every other battle, and a fire only every eighth,
+            // so the discard pile keeps cards
+            if (random.nextInt(2) == 0) {
+                att += range + 1;
+            }
+            int heal = random.nextInt(8) == 0 ? random.nextInt(range) : 0;
+            int priority = game.battle(att, hp, heal);
+            result = priority + " " + (priority == 0 ? "-" : game.cards.name(game.lastPlayed)) + " "
+                    + game.lastReturned + " " + game.lastRevived + " " + game.winningScore();
+        } else {
+            int stolen = game.stealCard(att, hp);
+            result = stolen == CardStore.NONE ? "-" : game.cards.name(stolen);
+        }
+        return result + " " + game.deckCount() + " " + game.discardPileCount();
+    }
+
+    // Two games in the same state save the same bytes: the scores, the names and every card in queue order
+    private static void compareSnapshots(GameSession expected, GameSession found, String where) {
+        if (!Arrays.equals(snapshot(found), snapshot(expected))) {
+            System.out.println(where + ": the snapshots differ");
+            System.exit(1);
+        }
+    }
+
+    private static byte[] snapshot(GameSession game) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            Snapshot.write(game, bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Returns the number of commands compared, exits on the first difference
+    private static long sessions(long seed, int steps) {
+        Random random = new Random(seed);
+        int range = seed % 2 == 0 ? 2 + random.nextInt(16) : 16 + random.nextInt(4096);
+        GameSession game = new GameSession();
+        PersistentSession persistent = new PersistentSession();
+        long commands = play(game, persistent, new Random(seed), range, steps / 2, seed, "");
+        GameSession gameFork = Snapshot.fork(game);
+        PersistentSession persistentFork = persistent.fork();
+        commands += play(gameFork, persistentFork, new Random(seed + 1), range, steps / 2, seed, "fork ");
+        commands += play(game, persistent, new Random(seed + 2), range, steps / 2, seed, "original ");
+        return commands;
+    }
+
+    private static long play(GameSession game, PersistentSession persistent, Random random, int range, int steps,
+                             long seed, String part) {
+        for (int step = 0; step < steps; step++) {
+            int op = random.nextInt(8);
+            int att = stat(random, range);
+            int hp = stat(random, range);
+            String expected;
+            String found;
+            if (op < 3) {
+                String name = part + step;
+                game.drawCard(name, att, health(hp));
+                persistent.drawCard(name, att, health(hp));
+                expected = "" + game.deckCount();
+                found = "" + persistent.deckCount();
+            } else if (op < 7) {
+                int heal = random.nextInt(2 * range);
+                int priority = game.battle(att, hp, heal);
+                expected = priority + " " + (priority == 0 ? "-" : game.cards.name(game.lastPlayed)) + " "
+                        + game.lastReturned + " " + game.lastRevived + " " + game.winningScore();
+                priority = persistent.battle(att, hp, heal);
+                found = priority + " " + (priority == 0 ? "-" : persistent.lastPlayed.name) + " "
+                        + persistent.lastReturned + " " + persistent.lastRevived + " " + persistent.winningScore();
+            } else {
+                int stolen = game.stealCard(att, hp);
+                CardValue card = persistent.stealCard(att, hp);
+                expected = stolen == CardStore.NONE ? "-" : game.cards.name(stolen);
+                found = card == null ? "-" : card.name;
+            }
+            expected += " " + game.deckCount() + " " + game.discardPileCount();
+            found += " " + persistent.deckCount() + " " + persistent.discardPileCount();
+            if (!found.equals(expected)) {
+                System.out.println("persistent game " + seed + " " + part + "step " + step + " op " + op + ": "
+                        + found + " instead of " + expected);
+                System.exit(1);
+            }
+        }
+        return steps;
+    }
+
+    // Returns the number of searches checked, exits on the first difference
+    private static long game(long seed, int steps) {
+        Random random = new Random(seed);
+        int range = seed % 2 == 0 ? 2 + random.nextInt(16) : 16 + random.nextInt(4096);
+        CardStore store = new CardStore();
+        AttackTree deck = new AttackTree(store);
+        RecursiveAttackTree baseline = new RecursiveAttackTree();
+        // The Card of every handle, handles are given out in order
+        Card[] cards = new Card[steps];
+        // Whether the card of a handle is in the deck, and when it went in the last time
+        boolean[] inDeck = new boolean[steps];
+        int[] arrived = new int[steps];
+        Random queries = new Random(seed + 3);
+        long searches = 0;
+        for (int step = 0; step < steps; step++) {
+            if (step % 16 == 15) {
+                queries(deck, store, inDeck, arrived, queries, range, step % 512 == 511, seed, step);
+            }
+            int op = random.nextInt(8);
+            int att = stat(random, range);
+            int hp = stat(random, range);
+            if (op < 3 || deck.size() == 0) {
+                Card card = new Card("c" + step, att, health(hp));
+                int handle = store.add(card.name, att, health(hp));
+                cards[handle] = card;
+                deck.insert(handle);
+                inDeck[handle] = true;
+                arrived[handle] = step;
+                baseline.insert(card);
+                continue;
+            }
+            int found;
+            Card expected;
+            switch (op) {
+                case 3:
+                    found = deck.firstPriority(att, hp);
+                    expected = baseline.firstPriority(att, hp);
+                    break;
+                case 4:
+                    found = deck.secondPriority(att, hp);
+                    expected = baseline.secondPriority(att, hp);
+                    break;
+                case 5:
+                    found = deck.thirdPriority(att, hp);
+                    expected = baseline.thirdPriority(att, hp);
+                    break;
+                case 6:
+                    found = deck.fourthPriority(att, hp);
+                    expected = baseline.fourthPriority(att, hp);
+                    break;
+                default:
+                    found = deck.stealCard(att, hp);
+                    expected = baseline.stealCard(att, hp);
+            }
+            searches++;
+            Card card = found == CardStore.NONE ? null : cards[found];
+            if (card != expected) {
+                System.out.println("game " + seed + " step " + step + " op " + op + " (" + att + ", " + hp + "): "
+                        + describe(card) + " instead of " + describe(expected));
+                System.exit(1);
+            }
+            if (card != null) {
+                inDeck[found] = false;
+            }
+            // Play it like a battle: the card survives the Stranger's attack or is gone
+            if (card != null && op != 7) {
+                card.takeDamage(att);
+                store.takeDamage(found, att);
+                if (card.curHp > 0) {
+                    card.changeAtt();
+                    store.changeAtt(found);
+                    deck.reinsert(found);
+                    baseline.insert(card);
+                    inDeck[found] = true;
+                    arrived[found] = step;
+                }
+            }
+            if (deck.size() != baseline.size()) {
+                System.out.println("game " + seed + " step " + step + ": size " + deck.size() + " instead of " + baseline.size());
+                System.exit(1);
+            }
+        }
+        return searches;
+    }
+
+    // Compare a few counts, and every place of the deck order when all is set, with a scan of the cards in the deck
+    private static void queries(AttackTree deck, final CardStore store, boolean[] inDeck, final int[] arrived,
+                                Random random, int range, boolean all, long seed, int step) {
+        Integer[] sorted = new Integer[deck.size()];
+        int size = 0;
+        for (int card = 0; card < store.size(); card++) {
+            if (inDeck[card]) {
+                sorted[size++] = card;
+            }
+        }
+        for (int q = 0; q < 4; q++) {
+            int minAtt = stat(random, range);
+            int hp = stat(random, range);
+            // Half of them right at the stats of a card, where the ties are
+            if (size > 0 && q % 2 == 0) {
+                int card = sorted[random.nextInt(size)];
+                minAtt = store.curAtt[card];
+                hp = store.curHp[card] - random.nextInt(2);
+            }
+            int expected = 0;
+            for (int i = 0; i < size; i++) {
+                if (store.curAtt[sorted[i]] >= minAtt && store.curHp[sorted[i]] > hp) {
+                    expected++;
+                }
+            }
+            int found = deck.countCards(minAtt, hp);
+            if (found != expected) {
+                System.out.println("game " + seed + " step " + step + ": countCards(" + minAtt + ", " + hp + ") is "
+                        + found + " instead of " + expected);
+                System.exit(1);
+            }
+        }
+        if (!all) {
+            return;
+        }
+        // Attack, then health from the largest, then the first one in first
+        Arrays.sort(sorted, 0, size, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if (store.curAtt[a] != store.curAtt[b]) {
+                    return Integer.compare(store.curAtt[b], store.curAtt[a]);
+                }
+                if (store.curHp[a] != store.curHp[b]) {
+                    return Integer.compare(store.curHp[b], store.curHp[a]);
+                }
+                return Integer.compare(arrived[a], arrived[b]);
+            }
+        });
+        for (int k = 0; k < size + 3; k++) {
+            int expected = k < size ? sorted[k] : CardStore.NONE;
+            int found = deck.kthStrongest(k);
+            if (found != expected) {
+                System.out.println("game " + seed + " step " + step + ": kthStrongest(" + k + ") is " + found
+                        + " instead of " + expected);
+                System.exit(1);
+            }
+        }
+    }
+
+    // A stat from about -range / 4 to range
+    private static int stat(Random random, int range) {
+        return random.nextInt(range + range / 4 + 2) - range / 4 - 1;
+    }
+
+    // A drawn card's health is never 0, its attack is scaled by the health it was drawn with
+    private static int health(int hp) {
+        return hp == 0 ? 1 : hp;
+    }
+
+    private static String describe(Card card) {
+        return card == null ? "no card" : card.name + " (" + card.curAtt + ", " + card.curHp + ")";
+    }
+}
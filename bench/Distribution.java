@@ -0,0 +1,19 @@
+// Card stat distributions used by the benchmark decks.
+// UNIFORM: attack and health spread evenly over [1, n], almost every card gets its own attack node.
+// SKEWED: a handful of attack and health values, so the inner trees and queues get very long.
+// ADVERSARIAL: mostly high attack / low health cards with a few low attack / high health ones,
+// which keeps the subtree maxHp of the attack tree high while most of the nodes cannot survive.
+// STRADDLING: the worst case of the first priority and steal searches. Every card below the middle attack is very
+// healthy, every card above it dies to anything but one, which has the highest attack. The Stranger's health
+// falls in the upper half, so the subtrees around the attack boundary look like they hold a survivor,
+// and the only card that fits is the rightmost one.
+public enum Distribution {
+    UNIFORM,
+    SKEWED,
+    ADVERSARIAL,
+    STRADDLING;
+
+    static Distribution parse(String text) {
+        return valueOf(text.trim().toUpperCase());
+    }
+}
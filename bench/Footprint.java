@@ -0,0 +1,49 @@
+import java.util.Random;
+
+// Footprint measures the retained heap of a deck: n cards are drawn into a GameSession and the heap in use
+// is compared before and after. The names are made before and stay alive, so they are counted apart;
+// Session is the CardStore and the trees.
+//
+// java -Xmx4g -cp out Footprint [sizes] [dist]    e.g. Footprint 1e6,1e7 skewed
+public class Footprint {
+
+    public static void main(String[] args) {
+        String[] sizes = (args.length > 0 ? args[0] : "1e6,1e7").split(",");
+        Distribution dist = args.length > 1 ? Distribution.parse(args[1]) : Distribution.UNIFORM;
+        System.out.printf("%-12s %10s %14s %14s %16s%n", "Dist", "Size", "Names(MB)", "Session(MB)", "Session(B/card)");
+        for (String text : sizes) {
+            int n = (int) Double.parseDouble(text);
+            long empty = usedHeap();
+            String[] names = new String[n];
+            int[] att = new int[n];
+            int[] hp = new int[n];
+            Random random = new Random(42);
+            for (int i = 0; i < n; i++) {
+                Card card = DeckGenerator.card(random, "c" + i, n, dist, i);
+                names[i] = card.name;
+                att[i] = card.baseAtt;
+                hp[i] = card.baseHp;
+            }
+            long withNames = usedHeap();
+            GameSession session = new GameSession();
+            for (int i = 0; i < n; i++) {
+                session.drawCard(names[i], att[i], hp[i]);
+            }
+            long withDeck = usedHeap();
+            System.out.printf("%-12s %10d %14.1f %14.1f %16.1f%n", dist.name().toLowerCase(), n,
+                (withNames - empty - 8L * n) / 1e6, (withDeck - withNames) / 1e6, (double) (withDeck - withNames) / n);
+            Benchmark.consume(session.deckCount() + names.length + att.length + hp.length);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // A few collections in a row, until the number stops going down
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
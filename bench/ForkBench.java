@@ -0,0 +1,78 @@
+// ForkBench forks a game of n cards and plays a short continuation of 64 battles on the fork, a score is per fork.
+// The game draws the deck and plays n / 4 battles first, so the discard pile and the queues are not empty.
+// Fork.snapshot forks a GameSession with Snapshot.fork, Fork.persistent a PersistentSession with fork;
+// Play.* play the same 64 battles without the fork, on one copy of the game that goes on from battle to battle.
+public class ForkBench extends Benchmark {
+    static final int CONTINUATION = 64;
+
+    private final boolean persistent;
+    private final boolean fork;
+    private GameSession game;
+    private PersistentSession persistentGame;
+    private int[] battles;
+
+    ForkBench(String name, boolean persistent, boolean fork) {
+        super(name);
+        this.persistent = persistent;
+        this.fork = fork;
+    }
+
+    static Benchmark[] all() {
+        return new Benchmark[] {
+            new ForkBench("Fork.snapshot", false, true),
+            new ForkBench("Fork.persistent", true, true),
+            new ForkBench("Play.session", false, false),
+            new ForkBench("Play.persistent", true, false),
+        };
+    }
+
+    @Override
+    void setup(int size, Distribution dist, long seed) {
+        Card[] deck = DeckGenerator.deck(size, dist, seed);
+        int[] opening = DeckGenerator.battles(size / 4, size, dist, seed + 2);
+        if (persistent) {
+            persistentGame = new PersistentSession();
+            for (Card card : deck) {
+                persistentGame.drawCard(card.name, card.baseAtt, card.baseHp);
+            }
+            for (int i = 0; i < opening.length; i += 3) {
+                persistentGame.battle(opening[i], opening[i + 1], opening[i + 2]);
+            }
+        } else {
+            game = new GameSession();
+            for (Card card : deck) {
+                game.drawCard(card.name, card.baseAtt, card.baseHp);
+            }
+            for (int i = 0; i < opening.length; i += 3) {
+                game.battle(opening[i], opening[i + 1], opening[i + 2]);
+            }
+        }
+        battles = DeckGenerator.battles(CONTINUATION, size, dist, seed + 3);
+    }
+
+    @Override
+    long run() {
+        int[] battles = this.battles;
+        long sum = 0;
+        if (persistent) {
+            PersistentSession session = fork ? persistentGame.fork() : persistentGame;
+            for (int i = 0; i < battles.length; i += 3) {
+                sum += session.battle(battles[i], battles[i + 1], battles[i + 2]);
+            }
+        } else {
+            GameSession session = fork ? Snapshot.fork(game) : game;
+            for (int i = 0; i < battles.length; i += 3) {
+                sum += session.battle(battles[i], battles[i + 1], battles[i + 2]);
+            }
+        }
+        consume(sum);
+        return 1;
+    }
+
+    @Override
+    void tearDown() {
+        game = null;
+        persistentGame = null;
+        battles = null;
+    }
+}
@@ -0,0 +1,109 @@
+// HealthTreeBench measures the fire phase searches on a discard pile of n cards,
+// and the surviving card search on a single inner tree that holds the whole deck.
+// The RecursiveHealthTree.* cases run the same operations on the recursive baseline tree.
+public class HealthTreeBench extends Benchmark {
+    static final int BATCH = 1 << 14;
+
+    enum Op { MAX_HP_SMALLER, MIN_HP_SURVIVING, INSERT_DELETE }
+
+    private final Op op;
+    private final boolean recursive;
+    private HealthTree tree;
+    private RecursiveHealthTree baseline;
+    private Card[] extra;
+    private int[] extraHandles;
+    private int[] queries;
+
+    HealthTreeBench(String name, Op op, boolean recursive) {
+        super(name);
+        this.op = op;
+        this.recursive = recursive;
+    }
+
+    static Benchmark[] all() {
+        String[] names = {"getMaxHpSmaller", "getMinHpSurviving", "insertDelete"};
+        Op[] ops = Op.values();
+        Benchmark[] all = new Benchmark[2 * ops.length];
+        for (int i = 0; i < ops.length; i++) {
+            all[i] = new HealthTreeBench("HealthTree." + names[i], ops[i], false);
+            all[ops.length + i] = new HealthTreeBench("RecursiveHealthTree." + names[i], ops[i], true);
+        }
+        return all;
+    }
+
+    @Override
+    void setup(int size, Distribution dist, long seed) {
+        // The surviving search runs on the deck side, the others on the discard pile
+        boolean discard = op != Op.MIN_HP_SURVIVING;
+        Card[] cards = DeckGenerator.deck(size, dist, seed);
+        if (discard) {
+            cards = DeckGenerator.discarded(cards);
+        }
+        if (recursive) {
+            baseline = new RecursiveHealthTree(discard);
+            for (Card card : cards) {
+                baseline.insert(card);
+            }
+        } else {
+            CardStore store = new CardStore(size + BATCH);
+            tree = new HealthTree(discard, store);
+            for (int card : DeckGenerator.add(store, cards)) {
+                tree.insert(card);
+            }
+            extraHandles = DeckGenerator.add(store, DeckGenerator.discarded(DeckGenerator.deck(BATCH, dist, seed + 1)));
+        }
+        extra = DeckGenerator.discarded(DeckGenerator.deck(BATCH, dist, seed + 1));
+        queries = DeckGenerator.battles(BATCH, size, dist, seed + 2);
+    }
+
+    @Override
+    long run() {
+        if (recursive) {
+            return runRecursive();
+        }
+        HealthTree tree = this.tree;
+        int[] queries = this.queries;
+        for (int i = 0; i < BATCH; i++) {
+            switch (op) {
+                case MAX_HP_SMALLER:
+                    consume(tree.getMaxHpSmaller(queries[3 * i + 2]));
+                    break;
+                case MIN_HP_SURVIVING:
+                    consume(tree.getMinHpSurviving(queries[3 * i]));
+                    break;
+                default:
+                    tree.insert(extraHandles[i]);
+                    tree.delete(extraHandles[i]);
+            }
+        }
+        return BATCH;
+    }
+
+    private long runRecursive() {
+        RecursiveHealthTree tree = this.baseline;
+        int[] queries = this.queries;
+        for (int i = 0; i < BATCH; i++) {
+            switch (op) {
+                case MAX_HP_SMALLER:
+                    consume(tree.getMaxHpSmaller(queries[3 * i + 2]));
+                    break;
+                case MIN_HP_SURVIVING:
+                    consume(tree.getMinHpSurviving(queries[3 * i]));
+                    break;
+                default:
+                    tree.insert(extra[i]);
+                    tree.delete(extra[i]);
+            }
+        }
+        return BATCH;
+    }
+
+    @Override
+    void tearDown() {
+        tree = null;
+        baseline = null;
+        extra = null;
+        extraHandles = null;
+        queries = null;
+    }
+}
@@ -0,0 +1,58 @@
+// OpeningBench builds the deck of an opening of n draws into an empty AttackTree, a score is per card.
+// Opening.insert inserts the cards one at a time, Opening.bulkload gives them all to insertAll, which sorts
+// them and builds the trees balanced, Opening.bulkload.sorted does the same on cards drawn in sorted order.
+// Every run starts from a new tree and a copy of the handles, since insertAll reorders them.
+public class OpeningBench extends Benchmark {
+    enum Op { INSERT, BULK_LOAD, BULK_LOAD_SORTED }
+
+    private final Op op;
+    private CardStore store;
+    private int[] handles;
+    private int[] copy;
+
+    OpeningBench(String name, Op op) {
+        super(name);
+        this.op = op;
+    }
+
+    static Benchmark[] all() {
+        return new Benchmark[] {
+            new OpeningBench("Opening.insert", Op.INSERT),
+            new OpeningBench("Opening.bulkload", Op.BULK_LOAD),
+            new OpeningBench("Opening.bulkload.sorted", Op.BULK_LOAD_SORTED),
+        };
+    }
+
+    @Override
+    void setup(int size, Distribution dist, long seed) {
+        store = new CardStore(size);
+        handles = DeckGenerator.add(store, DeckGenerator.deck(size, dist, seed));
+        if (op == Op.BULK_LOAD_SORTED) {
+            CardSort.sort(store, handles, handles.length, new int[handles.length]);
+        }
+        copy = new int[handles.length];
+    }
+
+    @Override
+    long run() {
+        AttackTree deck = new AttackTree(store);
+        int[] cards = copy;
+        System.arraycopy(handles, 0, cards, 0, cards.length);
+        if (op == Op.INSERT) {
+            for (int card : cards) {
+                deck.insert(card);
+            }
+        } else {
+            deck.insertAll(cards, cards.length);
+        }
+        consume(deck.root.maxHp);
+        return cards.length;
+    }
+
+    @Override
+    void tearDown() {
+        store = null;
+        handles = null;
+        copy = null;
+    }
+}
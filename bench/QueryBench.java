@@ -0,0 +1,81 @@
+// QueryBench answers the dashboard queries on a prebuilt deck of n cards, a score is per query.
+// Query.countCards uses the deck's CountIndex, made in the setup, Query.kthCard the subtree counts of the deck,
+// Query.countCards.scan answers the same count by going over every card, the way it had to be answered before.
+// The scan only runs SCAN_BATCH queries an iteration, it is O(n) each.
+public class QueryBench extends Benchmark {
+    static final int BATCH = 1 << 14;
+    static final int SCAN_BATCH = 16;
+
+    enum Op { COUNT, KTH, COUNT_SCAN }
+
+    private final Op op;
+    private CardStore store;
+    private AttackTree deck;
+    private int[] handles;
+    private int[] queries;
+
+    QueryBench(String name, Op op) {
+        super(name);
+        this.op = op;
+    }
+
+    static Benchmark[] all() {
+        return new Benchmark[] {
+            new QueryBench("Query.countCards", Op.COUNT),
+            new QueryBench("Query.kthCard", Op.KTH),
+            new QueryBench("Query.countCards.scan", Op.COUNT_SCAN),
+        };
+    }
+
+    @Override
+    void setup(int size, Distribution dist, long seed) {
+        store = new CardStore(size);
+        deck = new AttackTree(store);
+        handles = DeckGenerator.add(store, DeckGenerator.deck(size, dist, seed));
+        for (int card : handles) {
+            deck.insert(card);
+        }
+        consume(deck.countCards(0, 0));
+        queries = DeckGenerator.battles(BATCH, size, dist, seed + 2);
+    }
+
+    @Override
+    long run() {
+        int[] queries = this.queries;
+        int batch = op == Op.COUNT_SCAN ? SCAN_BATCH : BATCH;
+        int size = handles.length;
+        for (int i = 0; i < batch; i++) {
+            int att = queries[3 * i];
+            int hp = queries[3 * i + 1];
+            switch (op) {
+                case COUNT:
+                    consume(deck.countCards(att, hp));
+                    break;
+                case KTH:
+                    consume(deck.kthStrongest((int) ((att * 31L + hp) % size)));
+                    break;
+                default:
+                    consume(scanCount(att, hp));
+            }
+        }
+        return batch;
+    }
+
+    private int scanCount(int att, int hp) {
+        int count = 0;
+        for (int card : handles) {
+            if (store.curAtt[card] >= att && store.curHp[card] > hp) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    void tearDown() {
+        store = null;
+        deck = null;
+        handles = null;
+        queries = null;
+    }
+}
@@ -0,0 +1,365 @@
+// RecursiveHealthTree is the recursive HealthTree as it was before the walks became loops,
+// kept verbatim for the benchmarks and the differential checks, with its own node and queue classes.
+public class RecursiveHealthTree {
+    static class Node {
+        CardQueue cards;
+        int maxHp;
+        int nodeHp;
+        Node right;
+        Node left;
+        int height;
+        int minHp;
+
+        Node(Card card, boolean useMissingHp) {
+            this.cards = new CardQueue();
+            this.cards.enqueue(card);
+            int value = useMissingHp ? card.missingHp : card.curHp;
+            this.maxHp = value;
+            this.nodeHp = value;
+            this.minHp = value;
+            this.height = 0;
+        }
+    }
+
+    // The linked FIFO queue of the original tree
+    static class CardQueue {
+        static class Link {
+            Card card;
+            Link next;
+
+            Link(Card card) {
+                this.card = card;
+            }
+        }
+
+        int size;
+        Link front;
+        Link back;
+
+        void enqueue(Card card) {
+            Link node = new Link(card);
+            if (size == 0) {
+                front = node;
+                back = node;
+            } else {
+                back.next = node;
+                back = node;
+            }
+            size++;
+        }
+
+        void dequeue() {
+            if (size != 0) {
+                front = front.next;
+                size--;
+                if (front == null) {
+                    back = null;
+                }
+            }
+        }
+
+        Card peek() {
+            return size == 0 ? null : front.card;
+        }
+    }
+
+    Node root;
+    boolean useMissingHp;
+    int size;
+
+    public RecursiveHealthTree(boolean useMissingHp) {
+        this.root = null;
+        this.useMissingHp = useMissingHp;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void increaseSize() {
+        size++;
+    }
+
+    private void decreaseSize() {
+        size--;
+    }
+
+    public int getHpMax(){
+        if (root == null){
+            return 0;
+        }
+        return root.maxHp;
+    }
+
+    private int height(Node node) {
+        if (node == null)
+            return -1;
+        return node.height;
+    }
+
+    // Updating the max-min values
+    private void updateHpStats(Node node) {
+        if (node != null) {
+            // Checking right is enough
+            int rightMax;
+            if (node.right != null) {
+                rightMax = node.right.maxHp;
+            } else {
+                rightMax = -1;
+            }
+            node.maxHp = Math.max(node.nodeHp, rightMax);
+
+            // Checking left is enough
+            int leftMin;
+            if (node.left != null) {
+                leftMin = node.left.minHp;
+            } else {
+                leftMin = Integer.MAX_VALUE;
+            }
+
+            node.minHp = Math.min(node.nodeHp, leftMin);
+
+        }
+    }
+
+    private int getBalance(Node node) {
+        if (node == null)
+            return 0;
+        return height(node.left) - height(node.right);
+    }
+
+    private Node rotateRight(Node y) {
+        if (y == null || y.left == null) {
+            return y;
+        }
+
+        Node x = y.left;
+        Node temp = x.right;
+
+        x.right = y;
+        y.left = temp;
+
+        // Update heights
+        y.height = Math.max(height(y.left), height(y.right)) + 1;
+        x.height = Math.max(height(x.left), height(x.right)) + 1;
+
+        // Update max values
+        updateHpStats(y);
+        updateHpStats(x);
+
+        return x;
+    }
+
+    private Node rotateLeft(Node x) {
+        if (x == null || x.right == null) {
+            return x;
+        }
+        Node y = x.right;
+        Node temp = y.left;
+
+        y.left = x;
+        x.right = temp;
+
+        // Update heights
+        x.height = Math.max(height(x.left), height(x.right)) + 1;
+        y.height = Math.max(height(y.left), height(y.right)) + 1;
+
+        // Update max values
+        updateHpStats(y);
+        updateHpStats(x);
+
+        return y;
+    }
+
+    public void insert(Card card) {
+        root = insertNode(root, card);
+        increaseSize();
+    }
+
+    // Locate the correct location, then add to Queue
+    public Node insertNode(Node node, Card card) {
+        if (node == null)
+            return new Node(card, useMissingHp);
+
+        int cardValue = useMissingHp ? card.missingHp : card.curHp;
+        if (cardValue < node.nodeHp)
+            node.left = insertNode(node.left, card);
+        else if (cardValue > node.nodeHp)
+            node.right = insertNode(node.right, card);
+        else {
+
+            node.cards.enqueue(card);
+            return node;
+        }
+        return rebalance(node);
+    }
+
+    // Method to find the node with minimum health value in a subtree
+    public Node minValueNode(Node node) {
+        Node current = node;
+        while (current.left != null)
+        {
+            current = current.left;
+        }
+        return current;
+    }
+    
+    public void delete(Card card) {
+        if (useMissingHp) {
+            root = deleteNode(root, card.missingHp);
+        } 
+        else {
+            root = deleteNode(root, card.curHp);
+        }
+        decreaseSize();
+    }
+    
+    // Locate the node, extract the card, if Queue is completely empty, delete the node itself
+    private Node deleteNode(Node node, int nodeHp) {
+        if (node == null)
+            return null;
+    
+        if (nodeHp < node.nodeHp) {
+            node.left = deleteNode(node.left, nodeHp);
+        } 
+        else if (nodeHp > node.nodeHp) {
+            node.right = deleteNode(node.right, nodeHp);
+        } 
+        else {
+            // When find, extract the card
+            node.cards.dequeue();
+    
+            if (node.cards.size == 0) {
+                if (node.left == null)
+                    return node.right;
+                else if (node.right == null)
+                    return node.left;
+    
+                Node minNode = minValueNode(node.right);
+
+                node.nodeHp = minNode.nodeHp;
+                node.cards = minNode.cards;
+    
+                node.right = deleteNodeCompletely(node.right, minNode.nodeHp);
+            }
+        }
+        return rebalance(node);
+    }
+
+    private Node deleteNodeCompletely(Node node, int nodeHp) {
+        if (node == null)
+            return null;
+    
+        if (nodeHp < node.nodeHp) {
+            node.left = deleteNodeCompletely(node.left, nodeHp);
+        } else if (nodeHp > node.nodeHp) {
+            node.right = deleteNodeCompletely(node.right, nodeHp);
+        } else {
+            if (node.left == null)
+                return node.right;
+            else if (node.right == null)
+                return node.left;
+    
+            Node minNode = minValueNode(node.right);
+            node.nodeHp = minNode.nodeHp;
+            node.cards = minNode.cards;
+            node.right = deleteNodeCompletely(node.right, minNode.nodeHp);
+        }
+    
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        updateHpStats(node);
+    
+        return node;
+    }
+    
+    // Updating stats and rebalancing the tree to satify AVL tree condition
+    private Node rebalance(Node node) {
+        if (node == null)
+            return null;
+        
+        // Update the height and necessary stats
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        updateHpStats(node);
+    
+        int balance = getBalance(node);
+    
+        if (balance > 1 && getBalance(node.left) >= 0)
+            return rotateRight(node);
+    
+        if (balance > 1 && getBalance(node.left) < 0) {
+            node.left = rotateLeft(node.left);
+            return rotateRight(node);
+        }
+
+        if (balance < -1 && getBalance(node.right) <= 0)
+            return rotateLeft(node);
+  
+        if (balance < -1 && getBalance(node.right) > 0) {
+            node.right = rotateRight(node.right);
+            return rotateLeft(node);
+        }
+    
+        return node;
+    }
+
+    public Card getMinHpSurviving(int att){
+        return getMinHpSurviving(root, att);
+    }
+
+    // Return the minimum hp that will survive the attack
+    private Card getMinHpSurviving(Node node, int att) {
+        Card candidate = null;
+        while (node != null) {
+            if (node.nodeHp > att) {
+                candidate = node.cards.peek();
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return candidate;
+    }
+
+    public Card getMinHp(){
+        return getMinHp(root);
+    }
+
+    // Return the card with minimum hp
+    private Card getMinHp(Node node) {
+        if (node == null) {
+            return null;
+        }
+        while(node.left != null){
+            node = node.left;
+        }
+        return node.cards.peek();
+    }
+
+    public Card getMaxHpSmaller(int hp){
+        return getMaxHpSmaller(root, hp);
+    }   
+
+    // Getting the maximum hp smaller than the heal, checking right-node-left order, since we want maximum
+    private Card getMaxHpSmaller(Node node, int heal) {
+        // Base condition
+        if (node == null || node.minHp > heal){
+            return null;
+        }
+
+        Card rightResult = getMaxHpSmaller(node.right, heal);
+        if (rightResult != null) {
+            return rightResult;
+        }
+
+        if (node.nodeHp <= heal){
+            Card currentResult = node.cards.peek();
+            if (currentResult != null) {
+                return currentResult;
+            }
+        }
+
+        Card leftResult = getMaxHpSmaller(node.left, heal);
+        return leftResult;
+    }
+    
+}
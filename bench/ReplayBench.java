@@ -0,0 +1,120 @@
+import java.io.*;
+import java.util.Random;
+
+// ReplayBench compares the text encounter files with their binary EncounterLog form on an encounter of n commands:
+// a deck of up to 2^20 cards is drawn, the rest are battles mixed with redraws of known names, steals and counts.
+// Replay.*.decode only reads the commands, Replay.text and Replay.binary also play them,
+// with the results formatted into a writer that drops them. The files are written once per size, outside the timing.
+public class ReplayBench extends Benchmark {
+    private static final int MAX_DECK = 1 << 20;
+
+    private final boolean binary;
+    private final boolean play;
+    private File text;
+    private File log;
+    private long commands;
+    private final OutputWriter out = new OutputWriter(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+
+    ReplayBench(String name, boolean binary, boolean play) {
+        super(name);
+        this.binary = binary;
+        this.play = play;
+    }
+
+    static Benchmark[] all() {
+        return new Benchmark[] {
+            new ReplayBench("Replay.text.decode", false, false),
+            new ReplayBench("Replay.binary.decode", true, false),
+            new ReplayBench("Replay.text", false, true),
+            new ReplayBench("Replay.binary", true, true),
+        };
+    }
+
+    @Override
+    void setup(int size, Distribution dist, long seed) {
+        try {
+            text = File.createTempFile("nightpass-replay", ".txt");
+            log = File.createTempFile("nightpass-replay", ".nplg");
+            text.deleteOnExit();
+            log.deleteOnExit();
+            write(text, size, dist, seed);
+            commands = EncounterLog.convert(text.getPath(), log.getPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Streamed out, so the size is only bounded by the disk
+    private static void write(File file, int size, Distribution dist, long seed) throws IOException {
+        Random random = new Random(seed);
+        int deck = Math.min(size / 4 + 1, MAX_DECK);
+        try (Writer out = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+            for (int i = 0; i < size; i++) {
+                if (i < deck) {
+                    Card card = DeckGenerator.card(random, "c" + i, deck, dist, i);
+                    out.write("draw_card " + card.name + " " + card.baseAtt + " " + card.baseHp + "\n");
+                    continue;
+                }
+                int att = 1 + random.nextInt(deck);
+                int hp = 1 + random.nextInt(deck);
+                switch (i % 16) {
+                    case 3:
+                    case 9:
+                        out.write("draw_card c" + random.nextInt(deck) + " " + att + " " + hp + "\n");
+                        break;
+                    case 5:
+                        out.write("steal_card " + hp + " " + att + "\n");
+                        break;
+                    case 10:
+                        out.write("deck_count\n");
+                        break;
+                    case 12:
+                        out.write("discard_pile_count\n");
+                        break;
+                    case 15:
+                        out.write("find_winning\n");
+                        break;
+                    default:
+                        out.write("battle " + att + " " + hp + " " + random.nextInt(deck + 1) + "\n");
+                }
+            }
+        }
+    }
+
+    @Override
+    long run() {
+        try (CommandSource source = binary ? new BinaryCommandReader(log.getPath()) : new CommandReader(new FileInputStream(text))) {
+            if (play) {
+                Main.run(new GameSession(), source, out);
+                out.flush();
+                return commands;
+            }
+            long sum = 0;
+            for (int command = source.next(); command != CommandReader.EOF; command = source.next()) {
+                sum += command + source.att + source.hp + source.heal;
+            }
+            consume(sum);
+            return commands;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    void tearDown() {
+        if (text != null) {
+            text.delete();
+            log.delete();
+        }
+        text = null;
+        log = null;
+    }
+}
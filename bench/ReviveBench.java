@@ -0,0 +1,86 @@
+// ReviveBench measures the fire phase on a deck of n cards: a discard pile of BATCH killed cards is fully revived
+// by a heal of exactly their total missing health, and the score is the time per revived card.
+// Revive.loop is the card by card loop (getMaxHpSmaller, delete, insert for every card),
+// Revive.batch is GameSession.revive (pollFitting and one insertAll), Revive.smallest is the smallest first revival
+// (one walk down the sums of the discard pile, a split and one insertAll).
+public class ReviveBench extends Benchmark {
+    static final int BATCH = 1 << 14;
+
+    // The fire phase that runs, null for the loop
+    private final RevivalPolicy policy;
+    private GameSession session;
+    private Card[] killed;
+    private int[] revived;
+    private int heal;
+
+    ReviveBench(String name, RevivalPolicy policy) {
+        super(name);
+        this.policy = policy;
+    }
+
+    static Benchmark[] all() {
+        return new Benchmark[] {
+            new ReviveBench("Revive.loop", null),
+            new ReviveBench("Revive.batch", GreedyRevival.DEFAULT),
+            new ReviveBench("Revive.smallest", SmallestFirstRevival.INSTANCE),
+        };
+    }
+
+    @Override
+    void setup(int size, Distribution dist, long seed) {
+        session = new GameSession();
+        for (Card card : DeckGenerator.deck(size, dist, seed)) {
+            session.drawCard(card.name, card.baseAtt, card.baseHp);
+        }
+        killed = DeckGenerator.deck(BATCH, dist, seed + 1);
+        heal = 0;
+        for (Card card : killed) {
+            heal += card.baseHp;
+        }
+    }
+
+    @Override
+    void beforeIteration() {
+        // The cards revived last time leave the deck, fresh killed copies go to the discard pile
+        if (revived != null) {
+            for (int card : revived) {
+                session.deck.delete(card);
+            }
+        }
+        revived = DeckGenerator.add(session.cards, DeckGenerator.discarded(killed));
+        for (int card : revived) {
+            session.discardPile.insert(card);
+        }
+    }
+
+    @Override
+    long run() {
+        if (policy != null) {
+            return policy.revive(session, heal);
+        }
+        HealthTree discardPile = session.discardPile;
+        DeckIndex deck = session.deck;
+        CardStore cards = session.cards;
+        int heal = this.heal;
+        int count = 0;
+        while (heal > 0 && discardPile.size() > 0) {
+            int revive = discardPile.getMaxHpSmaller(heal);
+            if (revive == CardStore.NONE) {
+                break;
+            }
+            discardPile.delete(revive);
+            heal -= cards.missingHp(revive);
+            cards.fullyRevive(revive);
+            deck.insert(revive);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    void tearDown() {
+        session = null;
+        killed = null;
+        revived = null;
+    }
+}
@@ -0,0 +1,82 @@
+import java.io.*;
+
+// SnapshotBench saves and restores a game of n cards, a score is per card.
+// The game draws the deck and plays n / 4 battles first, so the discard pile and the queues are not empty.
+// Snapshot.redraw is the restore a snapshot replaces: a new game that draws every card of the deck one by one.
+public class SnapshotBench extends Benchmark {
+    enum Op { WRITE, READ, REDRAW }
+
+    private final Op op;
+    private GameSession session;
+    private byte[] snapshot;
+    private Card[] deck;
+    private int cards;
+
+    SnapshotBench(String name, Op op) {
+        super(name);
+        this.op = op;
+    }
+
+    static Benchmark[] all() {
+        return new Benchmark[] {
+            new SnapshotBench("Snapshot.write", Op.WRITE),
+            new SnapshotBench("Snapshot.read", Op.READ),
+            new SnapshotBench("Snapshot.redraw", Op.REDRAW),
+        };
+    }
+
+    @Override
+    void setup(int size, Distribution dist, long seed) {
+        deck = DeckGenerator.deck(size, dist, seed);
+        session = new GameSession();
+        for (Card card : deck) {
+            session.drawCard(card.name, card.baseAtt, card.baseHp);
+        }
+        int[] battles = DeckGenerator.battles(size / 4, size, dist, seed + 2);
+        for (int i = 0; i < battles.length; i += 3) {
+            session.battle(battles[i], battles[i + 1], battles[i + 2]);
+        }
+        cards = session.deckCount() + session.discardPileCount();
+        snapshot = write(session);
+    }
+
+    private static byte[] write(GameSession session) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Snapshot.write(session, bytes);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    long run() {
+        switch (op) {
+            case WRITE:
+                consume(write(session).length);
+                return cards;
+            case READ:
+                try {
+                    consume(Snapshot.read(new ByteArrayInputStream(snapshot)).deckCount());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return cards;
+            default:
+                GameSession redrawn = new GameSession();
+                for (Card card : deck) {
+                    redrawn.drawCard(card.name, card.baseAtt, card.baseHp);
+                }
+                consume(redrawn.deckCount());
+                return deck.length;
+        }
+    }
+
+    @Override
+    void tearDown() {
+        session = null;
+        snapshot = null;
+        deck = null;
+    }
+}
@@ -0,0 +1,81 @@
+import java.util.Arrays;
+
+// StealBench measures a raid on a deck of n cards: every card above an attack and a health limit is stolen,
+// the limits are picked so that about BATCH cards match, and the score is the time per stolen card.
+// Steal.loop calls stealCard until it finds nothing, Steal.all is one stealAll (split, take, join).
+// The stolen cards go back into the deck before the next iteration.
+public class StealBench extends Benchmark {
+    static final int BATCH = 1 << 14;
+
+    private final boolean all;
+    private AttackTree deck;
+    private int attackLimit;
+    private int healthLimit;
+    private int[] stolen = new int[0];
+    private int stolenCount;
+
+    StealBench(String name, boolean all) {
+        super(name);
+        this.all = all;
+    }
+
+    static Benchmark[] all() {
+        return new Benchmark[] {
+            new StealBench("Steal.loop", false),
+            new StealBench("Steal.all", true),
+        };
+    }
+
+    @Override
+    void setup(int size, Distribution dist, long seed) {
+        CardStore store = new CardStore(size);
+        deck = new AttackTree(store);
+        int[] handles = DeckGenerator.add(store, DeckGenerator.deck(size, dist, seed));
+        int[] att = new int[size];
+        int[] hp = new int[size];
+        for (int i = 0; i < size; i++) {
+            deck.insert(handles[i]);
+            att[i] = store.curAtt[handles[i]];
+            hp[i] = store.curHp[handles[i]];
+        }
+        // At most 2 * BATCH cards above the attack limit, about half of them above the median health
+        Arrays.sort(att);
+        Arrays.sort(hp);
+        attackLimit = att[Math.max(size - 1 - 2 * BATCH, 0)];
+        healthLimit = hp[size / 2];
+        stolenCount = 0;
+    }
+
+    @Override
+    void beforeIteration() {
+        for (int i = 0; i < stolenCount; i++) {
+            deck.insert(stolen[i]);
+        }
+        stolenCount = 0;
+    }
+
+    @Override
+    long run() {
+        if (all) {
+            stolenCount = deck.stealAll(attackLimit, healthLimit);
+            stolen = deck.stolen();
+            return stolenCount;
+        }
+        if (stolen.length < deck.size()) {
+            stolen = new int[deck.size()];
+        }
+        int card = deck.stealCard(attackLimit, healthLimit);
+        while (card != CardStore.NONE) {
+            stolen[stolenCount++] = card;
+            card = deck.stealCard(attackLimit, healthLimit);
+        }
+        return stolenCount;
+    }
+
+    @Override
+    void tearDown() {
+        deck = null;
+        stolen = new int[0];
+        stolenCount = 0;
+    }
+}
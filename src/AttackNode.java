@@ -1,9 +1,14 @@
 // AttackNode class represents a node in the AttackTree. It stores another AVL tree, HealthTree so that when same attack card is inserted, it goes to the inner tree. 
-// Also every node stores its subtrees maximum attack, maximum health and min attack. 
+// Most attack values only ever have one card, so that card is kept in the node itself and the inner tree is only
+// made when a second card with the same attack comes; the node goes back to the single card when one is left.
+// Also every node stores its subtrees maximum attack, maximum health, min attack and number of cards. 
 // This makes it easier to search, since it allows us to make decision for both health and attack faster. 
 public class AttackNode {
-    HealthTree healthTree;
+    HealthTree healthTree; // null while the node has a single card
+    int card; // That card, CardStore.NONE while the inner tree holds the cards
+    int cardsMaxHp; // Maximum health of the node's own cards, Integer.MIN_VALUE if it has none
     int maxHp;
+    int count;
     int maxAtt;
     int minAtt;
     int nodeAtt;
@@ -11,15 +16,26 @@ public class AttackNode {
     AttackNode left;
     int height;
 
-    AttackNode(Card card) {
-        this.healthTree = new HealthTree(false); // For card deck
-        healthTree.insert(card);
-        this.nodeAtt = card.curAtt;
-        this.maxAtt = card.curAtt;
-        this.minAtt = card.curAtt;
-        this.maxHp = card.curHp;
+    AttackNode(int card, int att, int hp) {
+        reset(card, att, hp);
+    }
+
+    // Start over as a leaf for the card, the node must have no cards
+    void reset(int card, int att, int hp) {
+        this.healthTree = null;
+        this.card = card;
+        this.cardsMaxHp = hp;
+        this.nodeAtt = att;
+        this.maxAtt = att;
+        this.minAtt = att;
+        this.maxHp = hp;
+        this.count = 1;
         this.right = null;
         this.left = null;
         this.height = 0;
     }
+
+    boolean isEmpty() {
+        return healthTree == null && card == CardStore.NONE;
+    }
 }
@@ -1,18 +1,61 @@
 // AttackTree class implements a AVL tree of AttackNodes which is sorted by the attack of the cards.
-// The class act as the outer tree.
-public class AttackTree {
+// The class act as the outer tree. The cards are handles of the game's CardStore.
+// Insert, delete and the priority searches are loops: the nodes from the root down are kept in a fixed-size
+// path (the same array is the stack of the in-order searches), so nothing recurses.
+// It is the DeckIndex of a GameSession.
+public class AttackTree implements DeckIndex {
     AttackNode root;
     int size;
+    final CardStore store;
+    // Path of the last walk and the direction taken at every node of it
+    private final AttackNode[] path = new AttackNode[HealthArena.MAX_HEIGHT];
+    private final boolean[] left = new boolean[HealthArena.MAX_HEIGHT];
+    // The nodes of all the inner trees
+    private final HealthArena healthArena;
+    // An empty inner tree, kept from the last node that went back to a single card
+    private HealthTree spareTree;
+    // The card taken last came from path[takenDepth], -1 once the path is not valid anymore
+    private int takenDepth = -1;
+    // The node of the last attack value that left the tree, the next new attack value reuses it
+    private AttackNode spare;
+    // Where the nodes come from and go back to when there is one, spare is not used then
+    private final NodePool pool;
+    // Merge buffer of insertAll
+    private int[] scratch;
+    // Counts the searches and rotations when the game has metrics
+    private Metrics metrics;
+    // The cards by attack and health for countCards, null until the first count
+    private CountIndex counts;
+    // The cards taken by the last stealAll
+    private int[] stolen = new int[16];
+    private int stolenCount;
+    // The two sides of the last split, and the node removeMin took out
+    private AttackNode splitLeft;
+    private AttackNode splitRight;
+    private AttackNode minNode;
 
-    public AttackTree() {
+    public AttackTree(CardStore store) {
+        this(store, null);
+    }
+
+    public AttackTree(CardStore store, NodePool pool) {
         this.root = null;
         this.size = 0;
+        this.store = store;
+        this.pool = pool;
+        this.healthArena = new HealthArena(store);
     }
 
     public int size() {
         return size;
     }
 
+    // Count the work of this tree and its inner trees into metrics
+    void countInto(Metrics metrics) {
+        this.metrics = metrics;
+        healthArena.metrics = metrics;
+    }
+
     private void increaseSize() {
         size++;
     }
@@ -27,28 +70,30 @@ public class AttackTree {
         return node.height;
     }
 
-    // Updating the max-min values when there is insertion-deletion
+    // Updating the max-min values when there is insertion-deletion.
+    // A missing subtree or an empty node counts as Integer.MIN_VALUE, below any health or attack a card can have,
+    // so a maxHp above a limit always means a card above it: health can be 0 or negative.
     public void updateMaxValues(AttackNode node) {
         if (node != null) {
             int innerMaxHp;
-            if (node.healthTree.root != null) {
-                innerMaxHp = node.healthTree.root.maxHp;
+            if (!node.isEmpty()) {
+                innerMaxHp = node.cardsMaxHp;
             } else {
-                innerMaxHp = -1;
+                innerMaxHp = Integer.MIN_VALUE;
             }
 
             int leftMaxHp;
             if (node.left != null) {
                 leftMaxHp = node.left.maxHp;
             } else {
-                leftMaxHp = -1;
+                leftMaxHp = Integer.MIN_VALUE;
             }
 
             int rightMaxHp;
             if (node.right != null) {
                 rightMaxHp = node.right.maxHp;
             } else {
-                rightMaxHp = -1;
+                rightMaxHp = Integer.MIN_VALUE;
             }
             // Check for the right, the left and also the whole tree inside the node's health tree.
             node.maxHp = Math.max(innerMaxHp, Math.max(leftMaxHp, rightMaxHp));
@@ -58,7 +103,7 @@ public class AttackTree {
             if (node.right != null) {
                 rightMaxAtt = node.right.maxAtt;
             } else {
-                rightMaxAtt = -1;
+                rightMaxAtt = Integer.MIN_VALUE;
             }
             
             node.maxAtt = Math.max(node.nodeAtt, rightMaxAtt);
@@ -72,6 +117,15 @@ public class AttackTree {
             
             node.minAtt = Math.min(node.nodeAtt, leftMinAtt);
 
+            // The cards of the subtree
+            int cards = cardCount(node);
+            if (node.left != null) {
+                cards += node.left.count;
+            }
+            if (node.right != null) {
+                cards += node.right.count;
+            }
+            node.count = cards;
         }
     }
 
@@ -86,6 +140,9 @@ public class AttackTree {
             return y;
         }
 
+        if (metrics != null) {
+            metrics.attackRotations++;
+        }
         AttackNode x = y.left;
         AttackNode temp = x.right;
 
@@ -107,6 +164,9 @@ public class AttackTree {
         if (x == null || x.right == null) {
             return x;
         }
+        if (metrics != null) {
+            metrics.attackRotations++;
+        }
         AttackNode y = x.right;
         AttackNode temp = y.left;
 
@@ -124,93 +184,435 @@ public class AttackTree {
         return y;
     }
 
-    public void insert(Card card) {
-        root = insertNode(root, card);
+    // Locate the right location, then go for inner
+    public void insert(int card) {
+        insertFrom(0, root, card);
+    }
+
+    // Put back the card that was taken last, after its stats changed.
+    // If its node is still in the tree, the path to it is still valid: the walk starts from the lowest node
+    // of that path whose subtree covers the new attack instead of the root, which is the node itself
+    // when the attack did not change.
+    public void reinsert(int card) {
+        int depth = takenDepth;
+        if (depth < 0) {
+            insert(card);
+            return;
+        }
+        int key = store.curAtt[card];
+        // Every node of the path covers the attack values between the nodes above it where the path turned
+        long low = Long.MIN_VALUE;
+        long high = Long.MAX_VALUE;
+        int start = 0;
+        for (int i = 0; i <= depth && low < key && key < high; i++) {
+            start = i;
+            if (key == path[i].nodeAtt) {
+                break;
+            }
+            if (left[i]) {
+                high = path[i].nodeAtt;
+            } else {
+                low = path[i].nodeAtt;
+            }
+        }
+        insertFrom(start, path[start], card);
+    }
+
+    // Walk down from node, which is at the given depth of a valid path, and insert there
+    private void insertFrom(int depth, AttackNode node, int card) {
+        takenDepth = -1;
+        AttackNode[] path = this.path;
+        boolean[] left = this.left;
+        int att = store.curAtt[card];
+        while (node != null) {
+            path[depth] = node;
+            if (att == node.nodeAtt) {
+                addCard(node, card);
+                // Updating for the node inserted and the nodes above it
+                updatePath(depth);
+                increaseSize();
+                if (counts != null) {
+                    count(card, 1);
+                }
+                return;
+            }
+            left[depth] = att < node.nodeAtt;
+            node = left[depth] ? node.left : node.right;
+            depth++;
+        }
+        link(depth, newNode(card));
+        rebalancePath(depth - 1);
         increaseSize();
+        if (counts != null) {
+            count(card, 1);
+        }
     }
-    // Locate the right location, then go for inner
-    private AttackNode insertNode(AttackNode node, Card card) {
-        if (node == null)
-            return new AttackNode(card);
 
-        if (card.curAtt < node.nodeAtt)
-            node.left = insertNode(node.left, card);
-        else if (card.curAtt > node.nodeAtt)
-            node.right = insertNode(node.right, card);
-        else {
-            node.healthTree.insert(card);
-            // Updating for the node inserted
-            updateMaxValues(node);
-            return node;
+    // Add the first count cards of the array, which is reordered.
+    // The cards are sorted by attack and health first, so every attack value is walked to once
+    // and every health value of it once, instead of once for every card.
+    // Cards with the same stats go in the order they have in the array. An empty tree is built balanced instead.
+    public void insertAll(int[] cards, int count) {
+        if (count <= 1) {
+            if (count == 1) {
+                insert(cards[0]);
+            }
+            return;
         }
+        if (scratch == null || scratch.length < count) {
+            scratch = new int[Math.max(count, 16)];
+        }
+        CardSort.sort(store, cards, count, scratch);
+        if (counts != null) {
+            for (int i = 0; i < count; i++) {
+                count(cards[i], 1);
+            }
+        }
+        if (root == null) {
+            load(cards, count);
+            return;
+        }
+        takenDepth = -1;
+        AttackNode[] path = this.path;
+        boolean[] left = this.left;
+        int from = 0;
+        while (from < count) {
+            int att = store.curAtt[cards[from]];
+            int end = from + 1;
+            while (end < count && store.curAtt[cards[end]] == att) {
+                end++;
+            }
+            int depth = 0;
+            AttackNode node = root;
+            while (node != null && node.nodeAtt != att) {
+                path[depth] = node;
+                left[depth] = att < node.nodeAtt;
+                node = left[depth] ? node.left : node.right;
+                depth++;
+            }
+            if (node != null) {
+                addCards(node, cards, from, end);
+                path[depth] = node;
+                updatePath(depth);
+            }
+            else {
+                node = newNode(cards[from]);
+                addCards(node, cards, from + 1, end);
+                updateMaxValues(node);
+                link(depth, node);
+                rebalancePath(depth - 1);
+            }
+            size += end - from;
+            from = end;
+        }
+    }
 
-        return rebalance(node);
+    // insertAll for an empty tree, the cards are sorted: one node per attack value with its cards in a balanced
+    // inner tree, then the tree is built from the nodes. O(n) after the sort, no walk and no rotation.
+    private void load(int[] cards, int count) {
+        int[] att = store.curAtt;
+        int nodeCount = 1;
+        for (int i = 1; i < count; i++) {
+            if (att[cards[i]] != att[cards[i - 1]]) {
+                nodeCount++;
+            }
+        }
+        AttackNode[] nodes = new AttackNode[nodeCount];
+        // The sort is done with the scratch, the inner trees take their slots in it
+        int[] slots = scratch;
+        int n = 0;
+        int from = 0;
+        while (from < count) {
+            int end = from + 1;
+            while (end < count && att[cards[end]] == att[cards[from]]) {
+                end++;
+            }
+            AttackNode node = newNode(cards[from]);
+            if (end - from > 1) {
+                node.card = CardStore.NONE;
+                node.healthTree = newTree();
+                node.healthTree.load(cards, from, end, slots);
+                updateCards(node);
+            }
+            nodes[n++] = node;
+            from = end;
+        }
+        build(nodes, nodeCount, count);
     }
 
-    public void delete(Card card) {
-        root = deleteNode(root, card);
-        decreaseSize();
+    // Make the tree, which must be empty, of the nodes: they are in increasing attack order and hold
+    // count cards in total. The middle node becomes the root and so on down, so the tree comes out
+    // balanced in O(n) without a rotation.
+    void build(AttackNode[] nodes, int count, int cards) {
+        takenDepth = -1;
+        root = buildRange(nodes, 0, count);
+        size = cards;
     }
-    // Locate the node, extract the card, if node is completely empty, delete the node itself
-    private AttackNode deleteNode(AttackNode node, Card card) {
-        if (node == null)
+
+    // The subtree of nodes[from..to), the recursion is only log n deep
+    private AttackNode buildRange(AttackNode[] nodes, int from, int to) {
+        if (from == to) {
             return null;
-     
-        if (card.curAtt < node.nodeAtt) {
-            node.left = deleteNode(node.left, card);
-        } 
-        else if (card.curAtt > node.nodeAtt) {
-            node.right = deleteNode(node.right, card);
-        } 
-        else {
-            node.healthTree.delete(card);
-    
-            if (node.healthTree.root != null) {
-            } 
-            else {
-                if (node.left == null)
-                    return node.right;
-                else if (node.right == null)
-                    return node.left;
-                else {
-                    // Finding the smallest of left
-                    AttackNode successor = minValueNode(node.right);
-    
-                    node.nodeAtt = successor.nodeAtt;
-                    node.healthTree = successor.healthTree;
-                    // Delete the node completely
-                    node.right = deleteNodeCompletely(node.right, successor.nodeAtt);
+        }
+        int mid = (from + to) >>> 1;
+        AttackNode node = nodes[mid];
+        node.left = buildRange(nodes, from, mid);
+        node.right = buildRange(nodes, mid + 1, to);
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        updateMaxValues(node);
+        return node;
+    }
+
+    // An empty inner tree on the deck's arena, for the nodes given to build
+    HealthTree innerTree() {
+        return new HealthTree(false, healthArena);
+    }
+
+    // A node for build whose cards are the inner tree's, the tree must hold at least two
+    AttackNode node(int att, HealthTree tree) {
+        AttackNode node = new AttackNode(CardStore.NONE, att, tree.getHpMax());
+        node.healthTree = tree;
+        return node;
+    }
+
+    // A node for a new attack value, from the pool or the spare one if there is any
+    private AttackNode newNode(int card) {
+        AttackNode node;
+        if (pool != null) {
+            node = pool.attackNode();
+        } else {
+            node = spare;
+            spare = null;
+        }
+        if (node == null) {
+            return new AttackNode(card, store.curAtt[card], store.curHp[card]);
+        }
+        node.reset(card, store.curAtt[card], store.curHp[card]);
+        return node;
+    }
+
+    // The node's own cards: a single card is kept in the node, the inner tree is made for the second one.
+    // A new card goes behind the ones already there, so the buckets stay first come first served.
+    private void addCard(AttackNode node, int card) {
+        if (node.healthTree != null) {
+            node.healthTree.insert(card);
+        } else if (node.card == CardStore.NONE) {
+            node.card = card;
+        } else {
+            HealthTree tree = newTree();
+            tree.insert(node.card);
+            tree.insert(card);
+            node.card = CardStore.NONE;
+            node.healthTree = tree;
+        }
+        updateCards(node);
+    }
+
+    // Same for the cards from index from up to to, sorted by health
+    private void addCards(AttackNode node, int[] cards, int from, int to) {
+        if (from == to) {
+            return;
+        }
+        if (node.healthTree == null && node.card == CardStore.NONE && to - from == 1) {
+            node.card = cards[from];
+        } else {
+            if (node.healthTree == null) {
+                HealthTree tree = newTree();
+                if (node.card != CardStore.NONE) {
+                    tree.insert(node.card);
+                    node.card = CardStore.NONE;
                 }
+                node.healthTree = tree;
             }
+            node.healthTree.insertAll(cards, from, to);
         }
-        return rebalance(node);
+        updateCards(node);
     }
-    
-    private AttackNode deleteNodeCompletely(AttackNode node, int nodeAtt) {
-        if (node == null)
-            return null;
-    
-        if (nodeAtt < node.nodeAtt) {
-            node.left = deleteNodeCompletely(node.left, nodeAtt);
-        } else if (nodeAtt > node.nodeAtt) {
-            node.right = deleteNodeCompletely(node.right, nodeAtt);
+
+    // Take a card of the node out: the one with the least health above att if survive is set, the weakest otherwise.
+    // A single card is the one, the searches only come here when it qualifies.
+    private int takeCard(AttackNode node, int att, boolean survive) {
+        HealthTree tree = node.healthTree;
+        int card;
+        if (tree == null) {
+            card = node.card;
+            node.card = CardStore.NONE;
         } else {
-            // Deleting the node completely
-            if (node.left == null)
-                return node.right;
-            else if (node.right == null)
-                return node.left;
-            else {
-                // Find the smallest of right, get it here
-                AttackNode succ = minValueNode(node.right);
-                node.nodeAtt = succ.nodeAtt;
-                node.healthTree = succ.healthTree;
-                node.right = deleteNodeCompletely(node.right, succ.nodeAtt);
+            card = survive ? tree.pollMinHpSurviving(att) : tree.pollMinHp();
+            singleIfOne(node);
+        }
+        updateCards(node);
+        return card;
+    }
+
+    // Take out the first card with the same health as the card, if there is one
+    private void deleteCard(AttackNode node, int card) {
+        HealthTree tree = node.healthTree;
+        if (tree == null) {
+            if (node.card != CardStore.NONE && store.curHp[node.card] == store.curHp[card]) {
+                node.card = CardStore.NONE;
             }
+        } else {
+            tree.delete(card);
+            singleIfOne(node);
         }
-        return rebalance(node);
+        updateCards(node);
     }
-    
+
+    // Go back to the single card when the inner tree has one left
+    private void singleIfOne(AttackNode node) {
+        HealthTree tree = node.healthTree;
+        if (tree.size() == 1) {
+            node.card = tree.pollMinHp();
+            node.healthTree = null;
+            spareTree = tree;
+        }
+    }
+
+    private void updateCards(AttackNode node) {
+        if (node.healthTree != null) {
+            node.cardsMaxHp = node.healthTree.getHpMax();
+        } else if (node.card != CardStore.NONE) {
+            node.cardsMaxHp = store.curHp[node.card];
+        } else {
+            node.cardsMaxHp = Integer.MIN_VALUE;
+        }
+    }
+
+    // The number of the node's own cards
+    private static int cardCount(AttackNode node) {
+        if (node.healthTree != null) {
+            return node.healthTree.size();
+        }
+        return node.card != CardStore.NONE ? 1 : 0;
+    }
+
+    private HealthTree newTree() {
+        HealthTree tree = spareTree;
+        if (tree == null) {
+            return new HealthTree(false, healthArena);
+        }
+        spareTree = null;
+        return tree;
+    }
+
+    // Locate the node, extract the card, if node is completely empty, delete the node itself
+    public void delete(int card) {
+        takenDepth = -1;
+        AttackNode[] path = this.path;
+        boolean[] left = this.left;
+        int att = store.curAtt[card];
+        int depth = 0;
+        AttackNode node = root;
+        while (node != null && node.nodeAtt != att) {
+            path[depth] = node;
+            left[depth] = att < node.nodeAtt;
+            node = left[depth] ? node.left : node.right;
+            depth++;
+        }
+        decreaseSize();
+        if (node == null) {
+            return;
+        }
+        if (counts != null) {
+            count(card, -1);
+        }
+
+        deleteCard(node, card);
+        if (!node.isEmpty()) {
+            path[depth] = node;
+            updatePath(depth);
+        }
+        else {
+            removeNode(node, depth);
+        }
+    }
+
+    // Detach a card from the node at path[depth], the one that survives att if survive is set, the weakest otherwise.
+    // The node is only unlinked when it has no cards left, otherwise the path stays valid for reinsert.
+    private int take(int depth, int att, boolean survive) {
+        AttackNode node = path[depth];
+        int card = takeCard(node, att, survive);
+        decreaseSize();
+        if (counts != null) {
+            count(card, -1);
+        }
+        if (!node.isEmpty()) {
+            updatePath(depth);
+            takenDepth = depth;
+        }
+        else {
+            removeNode(node, depth);
+            takenDepth = -1;
+        }
+        return card;
+    }
+
+    // Unlink the node at the given depth, the path above it must be filled
+    private void removeNode(AttackNode node, int depth) {
+        if (node.left == null || node.right == null) {
+            link(depth, node.left != null ? node.left : node.right);
+            rebalancePath(depth - 1);
+            free(node);
+            return;
+        }
+
+        // Finding the smallest of right, it takes the place of the node
+        path[depth] = node;
+        left[depth] = false;
+        int i = depth + 1;
+        AttackNode successor = node.right;
+        while (successor.left != null) {
+            path[i] = successor;
+            left[i] = true;
+            i++;
+            successor = successor.left;
+        }
+        node.nodeAtt = successor.nodeAtt;
+        node.healthTree = successor.healthTree;
+        node.card = successor.card;
+        node.cardsMaxHp = successor.cardsMaxHp;
+        link(i, successor.right);
+        rebalancePath(i - 1);
+        // The successor's object leaves the tree, without cards
+        successor.healthTree = null;
+        successor.card = CardStore.NONE;
+        free(successor);
+    }
+
+    private void free(AttackNode node) {
+        if (pool != null) {
+            pool.free(node);
+        } else {
+            spare = node;
+        }
+    }
+
+    // Put child under the node at depth - 1 of the path, the root if depth is 0
+    private void link(int depth, AttackNode child) {
+        if (depth == 0) {
+            root = child;
+        } else if (left[depth - 1]) {
+            path[depth - 1].left = child;
+        } else {
+            path[depth - 1].right = child;
+        }
+    }
+
+    // Rebalance the path from the given depth up to the root
+    private void rebalancePath(int depth) {
+        for (int i = depth; i >= 0; i--) {
+            link(i, rebalance(path[i]));
+        }
+    }
+
+    // Only the stats changed, the heights are the same
+    private void updatePath(int depth) {
+        for (int i = depth; i >= 0; i--) {
+            updateMaxValues(path[i]);
+        }
+    }
+
     // Rebalancing the height and the stats of the node, so that AVL tree structure is preserved
     private AttackNode rebalance(AttackNode node) {
         node.height = Math.max(height(node.left), height(node.right)) + 1;
@@ -237,152 +639,390 @@ public class AttackTree {
         return node;
     } 
 
-    // Method to find the node with minimum attack value in a subtree
-    private AttackNode minValueNode(AttackNode node) {
-        AttackNode current = node;
-        // Go to the leftmost node
-        while (current.left != null) {
-            current = current.left;
-        }
-        return current;
-    }
+    // The priority searches and stealCard find the node of their card with its full path in the same walk,
+    // then take the card out of it, so the tree is not searched a second time to delete it.
 
-    public Card firstPriority(int att, int hp){
-        Card card = firstPriorityOrSteal(root, att, hp, false);
-        if (card == null){
-            return null;
+    public int firstPriority(int att, int hp){
+        int depth = firstPriorityOrSteal(att, hp, false);
+        if (depth < 0){
+            return CardStore.NONE;
         }
-        delete(card);
-        return card;
+        return take(depth, att, true);
     }
-    // Try to find the card according to the first priority/stealing:
-    // Checking left-node-right order since we want minAtt
+    // Try to find the node of the card according to the first priority/stealing, returns its depth in path or -1:
+    // the smallest attack of at least minAtt whose node has a card with more health than att.
+    // It is a split-point search, nothing is searched twice:
+    // first the path to minAtt is walked, every node on it with enough attack is a candidate together with its
+    // right subtree, and the deeper a candidate is the smaller its attacks are. Then the candidates are checked
+    // from the bottom up, a node by its own cards and its right subtree by maxHp. The first that fits has the card:
+    // a right subtree only holds enough attack, so its maxHp leads straight down to the node.
+    // Both walks are one root to leaf path, so the search is O(log n) whatever the deck is.
     // Stealing is similar, just changing the hp-att and the equity condition is sufficent, so one function is sufficent for both.
-    private Card firstPriorityOrSteal(AttackNode node, int att, int hp, boolean steal){
-        // For base condition check att and hp stats for every step
-        if (!steal){
-            if (node == null || node.maxHp <= att || node.maxAtt < hp){
-                return null;
-            }
+    private int firstPriorityOrSteal(int att, int hp, boolean steal){
+        // The walk overwrites the path
+        takenDepth = -1;
+        // Stealing needs strictly more attack
+        if (steal && hp == Integer.MAX_VALUE) {
+            return -1;
         }
-        else{
-            if (node == null || node.maxHp <= att || node.maxAtt <= hp){
-                return null;
-            }
+        int minAtt = steal ? hp + 1 : hp;
+        AttackNode[] path = this.path;
+        boolean[] left = this.left;
+        int depth = 0;
+        AttackNode node = root;
+        int search = steal ? Metrics.STEAL : Metrics.FIRST_PRIORITY;
+        // No card survives anywhere, or no attack is high enough
+        if (node == null || node.maxHp <= att || node.maxAtt < minAtt) {
+            return visited(search, node == null ? 0 : 1, -1);
         }
-        // Search for left, if don't satisfy, don't go further left.
-        Card leftResult = firstPriorityOrSteal(node.left, att, hp, steal);
-        if (leftResult != null) {
-            return leftResult;
+        // A subtree without a survivor holds no candidate, and neither does one with too little attack
+        while (node != null && node.maxHp > att && node.maxAtt >= minAtt) {
+            path[depth] = node;
+            left[depth] = node.nodeAtt >= minAtt;
+            node = left[depth] ? node.left : node.right;
+            depth++;
         }
-        // Search for the node, if don't satisfy go right.
-        if ((!steal && node.healthTree.getHpMax() > att && node.nodeAtt >= hp) || (steal && node.healthTree.getHpMax() > att && node.nodeAtt > hp) ) {
-            // If there is a card possible, get it from the innertree
-            Card currentResult = node.healthTree.getMinHpSurviving(att);
-            if (currentResult != null) {
-                return currentResult;
+        for (int i = depth - 1; i >= 0; i--) {
+            if (!left[i]) {
+                continue;
+            }
+            node = path[i];
+            if (node.cardsMaxHp > att) {
+                return visited(search, depth, i);
+            }
+            if (node.right != null && node.right.maxHp > att) {
+                left[i] = false;
+                int found = descendMinAtt(i + 1, node.right, att);
+                return visited(search, depth + found - i, found);
             }
         }
-
-        Card rightResult = firstPriorityOrSteal(node.right, att, hp, steal);
-        return rightResult;
+        return visited(search, depth, -1);
     }
 
-    public Card secondPriority(int att, int hp){
-        Card card = secondPriority(root, att, hp);
-        if (card == null){
-            return null;
+    // Count the nodes a search visited, returns the depth it found
+    private int visited(int search, int nodes, int found) {
+        if (metrics != null) {
+            metrics.search(search, nodes);
         }
-        delete(card);
-        return card;
+        return found;
     }
-    // Try to find the card according to the second priority:
-    // First look for right, since we want maximum attack possible, then look for the node, and then the left
-    private Card secondPriority(AttackNode node, int att, int hp){
-         // For base condition check att and hp stats for every step
-        if (node == null || node.maxHp <= att || node.minAtt >= hp){
-            return null;
-        }
 
-        Card rightResult = secondPriority(node.right, att, hp);
-        if (rightResult != null) {
-            return rightResult;
-        }
-
-        if (node.healthTree.getHpMax() > att && node.nodeAtt < hp){
-            // If there is a card possible, get it from the innertree
-            Card currentResult = node.healthTree.getMinHpSurviving(att);
-            if (currentResult != null) {
-                return currentResult;
+    // Walk down to the node of the smallest attack in the subtree of node that has a card with more health than att,
+    // node is at the given depth of the path and its maxHp must be more than att
+    private int descendMinAtt(int depth, AttackNode node, int att) {
+        AttackNode[] path = this.path;
+        boolean[] left = this.left;
+        while (true) {
+            path[depth] = node;
+            if (node.left != null && node.left.maxHp > att) {
+                left[depth] = true;
+                node = node.left;
+            } else if (node.cardsMaxHp > att) {
+                return depth;
+            } else {
+                left[depth] = false;
+                node = node.right;
             }
+            depth++;
         }
-
-        Card leftResult = secondPriority(node.left, att, hp);
-        return leftResult;
     }
 
-
-    public Card thirdPriority(int att, int hp){
-        Card card = thirdPriority(root, att, hp);
-        if (card == null){
-            return null;
+    public int secondPriority(int att, int hp){
+        int depth = secondPriority(root, att, hp);
+        if (depth < 0){
+            return CardStore.NONE;
         }
-        delete(card);
-        return card;
+        return take(depth, att, true);
     }
-    // No need to check hp, just checking for correct att is enough, first look for right
-    private Card thirdPriority(AttackNode node, int att, int hp){
-
-        if (node == null || node.maxAtt < hp){
-            return null;
+    // Try to find the node of the card according to the second priority, returns its depth in path or -1:
+    // the largest attack below hp whose node has a card with more health than att.
+    // The mirror of firstPriorityOrSteal: every node on the path to hp with less attack is a candidate together
+    // with its left subtree, the deeper the larger their attacks. The candidates are checked from the bottom up,
+    // and a left subtree that fits is descended by maxHp straight to the node, so the search is O(log n).
+    private int secondPriority(AttackNode node, int att, int hp){
+        takenDepth = -1;
+        AttackNode[] path = this.path;
+        boolean[] left = this.left;
+        int depth = 0;
+        // A subtree without a survivor holds no candidate, and neither does one with too much attack
+        while (node != null && node.maxHp > att && node.minAtt < hp) {
+            path[depth] = node;
+            left[depth] = node.nodeAtt >= hp;
+            node = left[depth] ? node.left : node.right;
+            depth++;
         }
-        Card leftResult = thirdPriority(node.left, att, hp);
-        if (leftResult != null) {
-            return leftResult;
+        for (int i = depth - 1; i >= 0; i--) {
+            if (left[i]) {
+                continue;
+            }
+            node = path[i];
+            if (node.cardsMaxHp > att) {
+                return visited(Metrics.SECOND_PRIORITY, depth, i);
+            }
+            if (node.left != null && node.left.maxHp > att) {
+                left[i] = true;
+                int found = descendMaxAtt(i + 1, node.left, att);
+                return visited(Metrics.SECOND_PRIORITY, depth + found - i, found);
+            }
         }
+        return visited(Metrics.SECOND_PRIORITY, depth, -1);
+    }
 
-        if (node.nodeAtt >= hp){
-            // If there is a card possible, get it from the innertree
-            Card currentResult = node.healthTree.getMinHp();
-            if (currentResult != null) {
-                return currentResult;
+    // Walk down to the node of the largest attack in the subtree of node that has a card with more health than att,
+    // node is at the given depth of the path and its maxHp must be more than att
+    private int descendMaxAtt(int depth, AttackNode node, int att) {
+        AttackNode[] path = this.path;
+        boolean[] left = this.left;
+        while (true) {
+            path[depth] = node;
+            if (node.right != null && node.right.maxHp > att) {
+                left[depth] = false;
+                node = node.right;
+            } else if (node.cardsMaxHp > att) {
+                return depth;
+            } else {
+                left[depth] = true;
+                node = node.left;
             }
+            depth++;
         }
+    }
 
-        Card rightResult = thirdPriority(node.right, att, hp);
-        return rightResult;
+
+    public int thirdPriority(int att, int hp){
+        int depth = thirdPriority(root, hp);
+        if (depth < 0){
+            return CardStore.NONE;
+        }
+        return take(depth, att, false);
+    }
+    // No need to check hp, just checking for correct att is enough: the smallest attack that is at least hp
+    private int thirdPriority(AttackNode node, int hp){
+        takenDepth = -1;
+        int depth = 0;
+        int found = -1;
+        while (node != null) {
+            path[depth] = node;
+            left[depth] = node.nodeAtt >= hp;
+            if (left[depth]) {
+                found = depth;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+            depth++;
+        }
+        return visited(Metrics.THIRD_PRIORITY, depth, found);
     }
 
     // Since there is no need to check health, and to find maxAtt, just going right as possible is sufficient
-    public Card fourthPriority(int att, int hp) {
-        Card card = findMaxAtt(root);
-        if (card == null){
-            return null;
+    public int fourthPriority(int att, int hp) {
+        int depth = findMaxAtt(root);
+        if (depth < 0){
+            return CardStore.NONE;
         }
-        delete(card);
-        return card;
+        return take(depth, att, false);
     }
 
     // Method to find the node with maximum attack value in a subtree
-    private Card findMaxAtt(AttackNode node){
+    private int findMaxAtt(AttackNode node){
+        takenDepth = -1;
         if (node == null) {
-            return null;
+            return visited(Metrics.FOURTH_PRIORITY, 0, -1);
         }
+        int depth = 0;
         // Go to the rigth if possible
         while (node.right != null) {
+            path[depth] = node;
+            left[depth] = false;
+            depth++;
             node = node.right;
         }
-        // If there is a card possible, get it from the innertree
-        return node.healthTree.getMinHp();
+        path[depth] = node;
+        return visited(Metrics.FOURTH_PRIORITY, depth + 1, depth);
     }
 
     // Finding the card which has stats more than the limits given
-    public Card stealCard(int attackLimit, int healthLimit) {
-        Card card = firstPriorityOrSteal(root, healthLimit, attackLimit, true);
-        if (card == null) {
-            return null;
+    public int stealCard(int attackLimit, int healthLimit) {
+        int depth = firstPriorityOrSteal(healthLimit, attackLimit, true);
+        if (depth < 0) {
+            return CardStore.NONE;
         }
-        delete(card);
-        return card;
+        return take(depth, healthLimit, true);
+    }
+
+    // Take out every card with more attack than attackLimit and more health than healthLimit, returns the number
+    // of cards taken. They are the first ones of stolen(), in the order stealCard would give them one by one:
+    // by attack, then by health, then first come first served.
+    // The tree is split at attackLimit, the cards are taken out of the side above it and the sides are joined again.
+    // Only the nodes that have such a card in their subtree are visited, and the inner trees are split at
+    // healthLimit the same way, so it is O(log n) for the splits and joins plus O(log n) for every node
+    // a card is stolen from, instead of a search and a delete for every card.
+    public int stealAll(int attackLimit, int healthLimit) {
+        takenDepth = -1;
+        stolenCount = 0;
+        if (root == null || root.maxAtt <= attackLimit || root.maxHp <= healthLimit) {
+            return 0;
+        }
+        split(root, attackLimit);
+        AttackNode kept = splitLeft;
+        AttackNode rest = stealAll(splitRight, healthLimit);
+        root = join(kept, rest);
+        size -= stolenCount;
+        return stolenCount;
+    }
+
+    public int[] stolen() {
+        return stolen;
+    }
+
+    // The subtree of node without its cards over healthLimit, in order: the left side, the node, the right side
+    private AttackNode stealAll(AttackNode node, int healthLimit) {
+        if (node == null || node.maxHp <= healthLimit) {
+            return node;
+        }
+        AttackNode left = stealAll(node.left, healthLimit);
+        if (node.cardsMaxHp > healthLimit) {
+            stealCards(node, healthLimit);
+        }
+        AttackNode right = stealAll(node.right, healthLimit);
+        if (node.isEmpty()) {
+            free(node);
+            return join(left, right);
+        }
+        return join(left, node, right);
+    }
+
+    // Take the node's cards over healthLimit into stolen, the node has at least one
+    private void stealCards(AttackNode node, int healthLimit) {
+        HealthTree tree = node.healthTree;
+        if (tree == null) {
+            addStolen(node.card);
+            node.card = CardStore.NONE;
+        } else {
+            int count = tree.pollAbove(healthLimit);
+            int[] polled = tree.polled();
+            for (int i = 0; i < count; i++) {
+                addStolen(polled[i]);
+            }
+            if (tree.size() == 1) {
+                singleIfOne(node);
+            } else if (tree.isEmpty()) {
+                node.healthTree = null;
+                spareTree = tree;
+            }
+        }
+        updateCards(node);
+    }
+
+    private void addStolen(int card) {
+        if (stolenCount == stolen.length) {
+            int[] grown = new int[2 * stolenCount];
+            System.arraycopy(stolen, 0, grown, 0, stolenCount);
+            stolen = grown;
+        }
+        stolen[stolenCount++] = card;
+        if (counts != null) {
+            count(card, -1);
+        }
+    }
+
+    // Split the subtree of node into the attacks up to key, in splitLeft, and the ones above it, in splitRight.
+    // Every level joins what it cuts off, O(log n) in total. The recursion is only log n deep.
+    private void split(AttackNode node, int key) {
+        if (node == null) {
+            splitLeft = null;
+            splitRight = null;
+            return;
+        }
+        AttackNode left = node.left;
+        AttackNode right = node.right;
+        if (node.nodeAtt <= key) {
+            split(right, key);
+            splitLeft = join(left, node, splitLeft);
+        } else {
+            split(left, key);
+            splitRight = join(splitRight, node, right);
+        }
+    }
+
+    // The tree of the subtrees left and right and the node mid between them: every attack of left is below mid's
+    // and every attack of right above it. mid goes down the side of the higher subtree to where the heights meet,
+    // and the way back up rebalances, so it is O(difference of the heights).
+    private AttackNode join(AttackNode left, AttackNode mid, AttackNode right) {
+        if (height(left) > height(right) + 1) {
+            left.right = join(left.right, mid, right);
+            return rebalance(left);
+        }
+        if (height(right) > height(left) + 1) {
+            right.left = join(left, mid, right.left);
+            return rebalance(right);
+        }
+        mid.left = left;
+        mid.right = right;
+        mid.height = Math.max(height(left), height(right)) + 1;
+        updateMaxValues(mid);
+        return mid;
+    }
+
+    // Same without a node between them: the smallest attack of right goes between
+    private AttackNode join(AttackNode left, AttackNode right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        AttackNode rest = removeMin(right);
+        return join(left, minNode, rest);
+    }
+
+    // The subtree without its smallest attack, which is left in minNode
+    private AttackNode removeMin(AttackNode node) {
+        if (node.left == null) {
+            minNode = node;
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return rebalance(node);
+    }
+
+    // The number of cards with at least minAtt attack and more than hp health, from the count index.
+    // The index is made from the deck on the first count, and from then on kept up to date with it.
+    public int countCards(int minAtt, int hp) {
+        if (counts == null) {
+            counts = new CountIndex();
+            for (int i = 0; i < size; i++) {
+                count(kthStrongest(i), 1);
+            }
+        }
+        return counts.count(minAtt, hp);
+    }
+
+    // Add the card to the count index or take it out, with its stats in the deck
+    private void count(int card, int delta) {
+        counts.update(store.curAtt[card], store.curHp[card], delta);
+    }
+
+    // The card at place k, from 0, with the cards from the strongest down: by attack, then by health,
+    // then first come first served. NONE if the deck has k cards or less. Both levels are walked by
+    // their subtree counts, so it is O(log n).
+    public int kthStrongest(int k) {
+        AttackNode node = root;
+        while (node != null) {
+            int right = node.right != null ? node.right.count : 0;
+            if (k < right) {
+                node = node.right;
+                continue;
+            }
+            k -= right;
+            int own = cardCount(node);
+            if (k < own) {
+                return node.healthTree != null ? node.healthTree.kthLargest(k) : node.card;
+            }
+            k -= own;
+            node = node.left;
+        }
+        return CardStore.NONE;
     }
 }
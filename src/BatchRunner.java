@@ -0,0 +1,88 @@
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+
+// BatchRunner plays every encounter file of a folder concurrently, one independent session per file,
+// on a SessionPool sized to the available cores. The output of dir/name goes to outDir/name.
+// When all files are done it prints, per file and in total: commands per second,
+// p50/p99 per-command latency and the peak heap.
+public class BatchRunner {
+
+    public static void run(String inDir, String outDir) {
+        File[] files = new File(inDir).listFiles();
+        if (files == null) {
+            System.out.println("Input folder not found: " + inDir);
+            return;
+        }
+        File out = new File(outDir);
+        if (!out.isDirectory() && !out.mkdirs()) {
+            System.out.println("Output folder could not be created: " + outDir);
+            return;
+        }
+
+        // Only the regular files, in name order so the report is stable
+        int count = 0;
+        for (File file : files) {
+            if (file.isFile()) {
+                files[count++] = file;
+            }
+        }
+        files = Arrays.copyOf(files, count);
+        Arrays.sort(files);
+
+        String[] inFiles = new String[count];
+        String[] outFiles = new String[count];
+        RunStats[] stats = new RunStats[count];
+        for (int i = 0; i < count; i++) {
+            inFiles[i] = files[i].getPath();
+            outFiles[i] = new File(out, files[i].getName()).getPath();
+            stats[i] = new RunStats(files[i].getName());
+        }
+
+        int threads = SessionPool.defaultThreads();
+        long start = System.nanoTime();
+        try (SessionPool pool = new SessionPool(threads)) {
+            pool.runAll(inFiles, outFiles, stats);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Batch interrupted.");
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        report(stats, seconds, threads);
+    }
+
+    private static void report(RunStats[] stats, double seconds, int threads) {
+        System.out.printf("%-32s %12s %10s %14s %12s %12s %14s%n",
+            "File", "Commands", "Time(s)", "Commands/s", "p50(ns)", "p99(ns)", "Peak heap(MB)");
+
+        LatencyHistogram all = new LatencyHistogram();
+        long commands = 0;
+        for (RunStats stat : stats) {
+            all.add(stat.latency);
+            commands += stat.commands;
+            System.out.printf("%-32s %12d %10.3f %14.0f %12d %12d %14.1f%s%n",
+                stat.name, stat.commands, stat.seconds(), stat.commandsPerSecond(),
+                stat.latency.percentile(50), stat.latency.percentile(99), stat.peakHeap / 1e6,
+                stat.finished ? "" : "  (stopped at an invalid command)");
+        }
+
+        System.out.printf("%-32s %12d %10.3f %14.0f %12d %12d %14.1f%n",
+            "TOTAL (" + stats.length + " files, " + threads + " threads)", commands, seconds,
+            seconds > 0 ? commands / seconds : 0, all.percentile(50), all.percentile(99), peakHeap() / 1e6);
+    }
+
+    // Sum of the peaks of the heap pools since the JVM started
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// BinaryCommandReader replays an EncounterLog: the file is memory-mapped and the commands are decoded
+// straight from the mapping, the arguments are varints and a card name is an index into the names seen so far,
+// so nothing is tokenized and no String is made once every name is known.
+// Files over a window are mapped one window at a time, a record may cross from one window into the next.
+public class BinaryCommandReader extends CommandSource {
+    private static final long WINDOW = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer buffer;
+    // File offset of the start of the current window
+    private long windowStart;
+    // The names by id, in the order the log gave them
+    private String[] names = new String[64];
+    private int nameCount;
+
+    public BinaryCommandReader(String file) throws IOException {
+        this.channel = new FileInputStream(file).getChannel();
+        this.size = channel.size();
+        map(0);
+        byte[] magic = EncounterLog.MAGIC;
+        for (int i = 0; i < magic.length; i++) {
+            if (size < magic.length + 1 || buffer.get() != magic[i]) {
+                channel.close();
+                throw new IOException("Not a binary encounter log: " + file);
+            }
+        }
+        int version = buffer.get();
+        if (version != EncounterLog.VERSION) {
+            channel.close();
+            throw new IOException("Unsupported encounter log version " + version + ": " + file);
+        }
+    }
+
+    @Override
+    public int next() throws IOException {
+        if (!buffer.hasRemaining() && windowStart + buffer.limit() == size) {
+            return CommandReader.EOF;
+        }
+        int opcode = readByte();
+        switch (opcode) {
+            case EncounterLog.NEW_CARD:
+                name = readName();
+                if (nameCount == names.length) {
+                    String[] grown = new String[2 * names.length];
+                    System.arraycopy(names, 0, grown, 0, nameCount);
+                    names = grown;
+                }
+                names[nameCount++] = name;
+                att = readInt();
+                hp = readInt();
+                return CommandReader.DRAW_CARD;
+            case EncounterLog.DRAW_CARD: {
+                int id = readVarint();
+                if (id < 0 || id >= nameCount) {
+                    throw corrupt();
+                }
+                name = names[id];
+                att = readInt();
+                hp = readInt();
+                return CommandReader.DRAW_CARD;
+            }
+            case EncounterLog.BATTLE:
+                att = readInt();
+                hp = readInt();
+                heal = readInt();
+                return CommandReader.BATTLE;
+            case EncounterLog.STEAL_CARD:
+                att = readInt();
+                hp = readInt();
+                return CommandReader.STEAL_CARD;
+            case EncounterLog.COUNT_CARDS:
+                att = readInt();
+                hp = readInt();
+                return CommandReader.COUNT_CARDS;
+            case EncounterLog.KTH_CARD:
+                att = readInt();
+                return CommandReader.KTH_CARD;
+            case EncounterLog.STEAL_ALL:
+                att = readInt();
+                hp = readInt();
+                return CommandReader.STEAL_ALL;
+            case EncounterLog.FIND_WINNING:
+                return CommandReader.FIND_WINNING;
+            case EncounterLog.DECK_COUNT:
+                return CommandReader.DECK_COUNT;
+            case EncounterLog.DISCARD_PILE_COUNT:
+                return CommandReader.DISCARD_PILE_COUNT;
+            case EncounterLog.INVALID:
+                name = readName();
+                return CommandReader.INVALID;
+            case EncounterLog.ERROR:
+                // The text file failed here, the replay fails with the same message
+                throw new IllegalArgumentException(readName());
+            default:
+                throw corrupt();
+        }
+    }
+
+    private int readByte() throws IOException {
+        if (!buffer.hasRemaining()) {
+            long next = windowStart + buffer.limit();
+            if (next == size) {
+                throw new EOFException("Encounter log ends inside a command");
+            }
+            map(next);
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw corrupt();
+    }
+
+    private int readInt() throws IOException {
+        int value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private String readName() throws IOException {
+        int length = readVarint();
+        if (length < 0) {
+            throw corrupt();
+        }
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            if (!buffer.hasRemaining()) {
+                bytes[read++] = (byte) readByte();
+                continue;
+            }
+            int chunk = Math.min(length - read, buffer.remaining());
+            buffer.get(bytes, read, chunk);
+            read += chunk;
+        }
+        return new String(bytes, EncounterLog.UTF_8);
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, size - start));
+    }
+
+    private IOException corrupt() {
+        return new IOException("Corrupt encounter log at byte " + (windowStart + buffer.position()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,63 @@
+// CardSort orders card handles by attack, then by health, for the bulk insertions of the deck.
+// It is a bottom-up merge sort, so equal cards keep their order and a bucket stays first come first served.
+public class CardSort {
+
+    // Sort the first count cards, scratch must hold at least count cards
+    public static void sort(CardStore store, int[] cards, int count, int[] scratch) {
+        int[] att = store.curAtt;
+        int[] hp = store.curHp;
+        // Short runs are sorted by insertion first
+        final int run = 16;
+        for (int from = 0; from < count; from += run) {
+            int to = Math.min(from + run, count);
+            for (int i = from + 1; i < to; i++) {
+                int card = cards[i];
+                int j = i - 1;
+                while (j >= from && compare(att, hp, cards[j], card) > 0) {
+                    cards[j + 1] = cards[j];
+                    j--;
+                }
+                cards[j + 1] = card;
+            }
+        }
+
+        // Then merged back and forth between the two arrays
+        int[] source = cards;
+        int[] target = scratch;
+        for (int width = run; width < count; width *= 2) {
+            for (int from = 0; from < count; from += 2 * width) {
+                int middle = Math.min(from + width, count);
+                int to = Math.min(from + 2 * width, count);
+                int i = from;
+                int j = middle;
+                int k = from;
+                while (i < middle && j < to) {
+                    // Taking from the left run on ties keeps the order
+                    target[k++] = compare(att, hp, source[j], source[i]) < 0 ? source[j++] : source[i++];
+                }
+                while (i < middle) {
+                    target[k++] = source[i++];
+                }
+                while (j < to) {
+                    target[k++] = source[j++];
+                }
+            }
+            int[] temp = source;
+            source = target;
+            target = temp;
+        }
+        if (source != cards) {
+            System.arraycopy(source, 0, cards, 0, count);
+        }
+    }
+
+    private static int compare(int[] att, int[] hp, int a, int b) {
+        if (att[a] != att[b]) {
+            return att[a] < att[b] ? -1 : 1;
+        }
+        if (hp[a] != hp[b]) {
+            return hp[a] < hp[b] ? -1 : 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,111 @@
+// CardStore holds the cards of one game as a struct of arrays: the stats of the card with handle h are
+// baseAtt[h], curAtt[h], baseHp[h], curHp[h] and missingHp[h], and its name is name[h] in the NameTable.
+// The trees and the queues only keep int handles, so a deck is a few large int arrays instead of
+// one object (and one String) per card, and the stats of cards drawn together sit next to each other.
+// The arrays grow by half when they are full, a handle stays valid for the whole game.
+public class CardStore {
+    // The handle of no card, what the searches return when they find nothing
+    public static final int NONE = -1;
+
+    int[] baseAtt;
+    int[] curAtt;
+    int[] baseHp;
+    int[] curHp;
+    int[] missingHp;
+    int[] name;
+    int size;
+    final NameTable names = new NameTable();
+
+    public CardStore() {
+        this(16);
+    }
+
+    public CardStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        baseAtt = new int[capacity];
+        curAtt = new int[capacity];
+        baseHp = new int[capacity];
+        curHp = new int[capacity];
+        missingHp = new int[capacity];
+        name = new int[capacity];
+    }
+
+    // Create a card, returns its handle
+    public int add(String cardName, int att, int hp) {
+        if (size == curAtt.length) {
+            grow();
+        }
+        int card = size++;
+        name[card] = names.intern(cardName);
+        baseAtt[card] = att;
+        curAtt[card] = att;
+        baseHp[card] = hp;
+        curHp[card] = hp;
+        missingHp[card] = 0;
+        return card;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String name(int card) {
+        return names.name(name[card]);
+    }
+
+    public int curAtt(int card) {
+        return curAtt[card];
+    }
+
+    public int curHp(int card) {
+        return curHp[card];
+    }
+
+    public int missingHp(int card) {
+        return missingHp[card];
+    }
+
+    // Partially heal
+    public void partialRevive(int card, int heal) {
+        missingHp[card] -= heal;
+        baseAtt[card] = (int) (baseAtt[card] * 0.95);
+        curAtt[card] = baseAtt[card];
+    }
+
+    // Fully heal, ready to fight
+    public void fullyRevive(int card) {
+        missingHp[card] = 0;
+        baseAtt[card] = (int) (baseAtt[card] * 0.90);
+        curHp[card] = baseHp[card];
+        curAtt[card] = baseAtt[card];
+    }
+
+    public void takeDamage(int card, int damage) {
+        curHp[card] -= damage;
+        if (curHp[card] <= 0) {
+            curHp[card] = 0;
+            missingHp[card] = baseHp[card];
+        }
+    }
+
+    // Changing the attack after battle
+    public void changeAtt(int card) {
+        curAtt[card] = Math.max(1, (int) Math.floor(baseAtt[card] * curHp[card] / baseHp[card]));
+    }
+
+    private void grow() {
+        int capacity = curAtt.length + (curAtt.length >> 1) + 1;
+        baseAtt = copy(baseAtt, capacity);
+        curAtt = copy(curAtt, capacity);
+        baseHp = copy(baseHp, capacity);
+        curHp = copy(curHp, capacity);
+        missingHp = copy(missingHp, capacity);
+        name = copy(name, capacity);
+    }
+
+    private static int[] copy(int[] values, int capacity) {
+        int[] grown = new int[capacity];
+        System.arraycopy(values, 0, grown, 0, values.length);
+        return grown;
+    }
+}
@@ -0,0 +1,51 @@
+// CardValue is a card of a PersistentSession: the same stats as a card of the CardStore, but it never changes.
+// A battle or a revival makes a new CardValue and the old one stays in the versions of the game that hold it,
+// which is the copy-on-write that lets forks of a game share their cards.
+// seq tells the cards apart in the order they were made; a card is made every time it goes into a tree,
+// so the cards with the same key come out of a tree first come first served by their seq.
+public final class CardValue {
+    final String name;
+    final int baseAtt;
+    final int curAtt;
+    final int baseHp;
+    final int curHp;
+    final int missingHp;
+    final long seq;
+
+    CardValue(String name, int baseAtt, int curAtt, int baseHp, int curHp, int missingHp, long seq) {
+        this.name = name;
+        this.baseAtt = baseAtt;
+        this.curAtt = curAtt;
+        this.baseHp = baseHp;
+        this.curHp = curHp;
+        this.missingHp = missingHp;
+        this.seq = seq;
+    }
+
+    // A new card
+    static CardValue draw(String name, int att, int hp, long seq) {
+        return new CardValue(name, att, att, hp, hp, 0, seq);
+    }
+
+    // The card after the Stranger's attack: CardStore.takeDamage, then CardStore.changeAtt if it survives
+    CardValue takeDamage(int damage, long seq) {
+        int hp = curHp - damage;
+        if (hp <= 0) {
+            return new CardValue(name, baseAtt, curAtt, baseHp, 0, baseHp, seq);
+        }
+        int att = Math.max(1, (int) Math.floor(baseAtt * hp / baseHp));
+        return new CardValue(name, baseAtt, att, baseHp, hp, missingHp, seq);
+    }
+
+    // Partially heal
+    CardValue partialRevive(int heal, long seq) {
+        int att = (int) (baseAtt * 0.95);
+        return new CardValue(name, att, att, baseHp, curHp, missingHp - heal, seq);
+    }
+
+    // Fully heal, ready to fight
+    CardValue fullyRevive(long seq) {
+        int att = (int) (baseAtt * 0.90);
+        return new CardValue(name, att, att, baseHp, baseHp, 0, seq);
+    }
+}
@@ -0,0 +1,252 @@
+import java.io.*;
+import java.nio.charset.Charset;
+
+// CommandReader tokenizes the encounter file straight from a reusable byte buffer.
+// next() returns the code of the next command and leaves its arguments in the public fields,
+// so no String is created for a line except the card name of draw_card.
+// The rules are the same as readLine + trim + split("\\s+"): blank lines are skipped,
+// any run of spaces/tabs separates the tokens and extra tokens at the end of a line are ignored.
+public class CommandReader extends CommandSource {
+    public static final int EOF = -1;
+    public static final int DRAW_CARD = 0;
+    public static final int BATTLE = 1;
+    public static final int FIND_WINNING = 2;
+    public static final int DECK_COUNT = 3;
+    public static final int DISCARD_PILE_COUNT = 4;
+    public static final int STEAL_CARD = 5;
+    public static final int COUNT_CARDS = 6;
+    public static final int KTH_CARD = 7;
+    public static final int STEAL_ALL = 8;
+    public static final int INVALID = 9;
+
+    private static final byte[][] COMMANDS = {
+        bytes("draw_card"),
+        bytes("battle"),
+        bytes("find_winning"),
+        bytes("deck_count"),
+        bytes("discard_pile_count"),
+        bytes("steal_card"),
+        bytes("count_cards"),
+        bytes("kth_card"),
+        bytes("steal_all"),
+    };
+
+    private final InputStream in;
+    private final Charset charset;
+    private final byte[] buffer;
+    private int pos;
+    private int limit;
+    // The current token, copied so that it can cross a buffer refill
+    private byte[] token = new byte[64];
+    private int tokenLength;
+
+    public CommandReader(InputStream in) {
+        this(in, 1 << 16);
+    }
+
+    public CommandReader(InputStream in, int bufferSize) {
+        this.in = in;
+        // Same decoding as the FileReader this replaces
+        this.charset = Charset.defaultCharset();
+        this.buffer = new byte[bufferSize];
+        this.pos = 0;
+        this.limit = 0;
+    }
+
+    private static byte[] bytes(String text) {
+        byte[] result = new byte[text.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) text.charAt(i);
+        }
+        return result;
+    }
+
+    @Override
+    public int next() throws IOException {
+        while (true) {
+            int c = skipSpaces();
+            if (c == -1) {
+                return EOF;
+            }
+            // Blank line
+            if (c == '\n' || c == '\r') {
+                pos++;
+                continue;
+            }
+
+            readToken();
+            int command = matchCommand();
+            switch (command) {
+                case DRAW_CARD:
+                    name = readName(1);
+                    att = readInt(2);
+                    hp = readInt(3);
+                    break;
+                case BATTLE:
+                    att = readInt(1);
+                    hp = readInt(2);
+                    heal = readInt(3);
+                    break;
+                case STEAL_CARD:
+                case COUNT_CARDS:
+                case STEAL_ALL:
+                    att = readInt(1);
+                    hp = readInt(2);
+                    break;
+                case KTH_CARD:
+                    att = readInt(1);
+                    break;
+                case INVALID:
+                    // Keep the token for the error message, the rest of the input is not read anymore
+                    name = new String(token, 0, tokenLength, charset);
+                    return INVALID;
+                default:
+            }
+            skipLine();
+            return command;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        while (n == 0) {
+            n = in.read(buffer, 0, buffer.length);
+        }
+        if (n < 0) {
+            pos = 0;
+            limit = 0;
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\f' || c == 0x0B;
+    }
+
+    // Skip the spaces in the current line, return the next byte without consuming it
+    private int skipSpaces() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            int c = buffer[pos];
+            if (!isSpace(c)) {
+                return c & 0xFF;
+            }
+            pos++;
+        }
+    }
+
+    // Copy bytes into token until a space, a line end or the end of the input
+    private void readToken() throws IOException {
+        tokenLength = 0;
+        while (true) {
+            if (pos == limit && !fill()) {
+                return;
+            }
+            byte c = buffer[pos];
+            if (isSpace(c) || c == '\n' || c == '\r') {
+                return;
+            }
+            if (tokenLength == token.length) {
+                byte[] grown = new byte[token.length * 2];
+                System.arraycopy(token, 0, grown, 0, tokenLength);
+                token = grown;
+            }
+            token[tokenLength++] = c;
+            pos++;
+        }
+    }
+
+    // Move to the next argument, it is an error if the line ends before it
+    private void nextArgument(int index) throws IOException {
+        int c = skipSpaces();
+        if (c == -1 || c == '\n' || c == '\r') {
+            // Same failure as indexing the split line
+            throw new ArrayIndexOutOfBoundsException("Index " + index + " out of bounds for length " + index);
+        }
+        readToken();
+    }
+
+    private int matchCommand() {
+        for (int command = 0; command < COMMANDS.length; command++) {
+            byte[] expected = COMMANDS[command];
+            if (expected.length != tokenLength) {
+                continue;
+            }
+            int i = 0;
+            while (i < tokenLength && token[i] == expected[i]) {
+                i++;
+            }
+            if (i == tokenLength) {
+                return command;
+            }
+        }
+        return INVALID;
+    }
+
+    private String readName(int index) throws IOException {
+        nextArgument(index);
+        return new String(token, 0, tokenLength, charset);
+    }
+
+    // Same accepted input as Integer.parseInt: optional sign, decimal digits, no overflow
+    private int readInt(int index) throws IOException {
+        nextArgument(index);
+        int i = 0;
+        boolean negative = false;
+        if (tokenLength > 0 && (token[0] == '-' || token[0] == '+')) {
+            negative = token[0] == '-';
+            i = 1;
+        }
+        if (i == tokenLength) {
+            throw numberFormat();
+        }
+        // Accumulate negatively so that Integer.MIN_VALUE fits
+        long min = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        long result = 0;
+        for (; i < tokenLength; i++) {
+            int digit = token[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw numberFormat();
+            }
+            result = result * 10 - digit;
+            if (result < min) {
+                throw numberFormat();
+            }
+        }
+        return negative ? (int) result : (int) -result;
+    }
+
+    private NumberFormatException numberFormat() {
+        return new NumberFormatException("For input string: \"" + new String(token, 0, tokenLength, charset) + "\"");
+    }
+
+    // Ignore whatever is left on the line, including the line end
+    private void skipLine() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return;
+            }
+            byte c = buffer[pos++];
+            if (c == '\n') {
+                return;
+            }
+            if (c == '\r') {
+                // \r\n counts as one line end
+                if ((pos < limit || fill()) && buffer[pos] == '\n') {
+                    pos++;
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,21 @@
+import java.io.*;
+
+// CommandSource is where the commands of a game come from: the text encounter file (CommandReader)
+// or its binary form (BinaryCommandReader). next() returns the code of the next command, one of the
+// CommandReader constants, and leaves its arguments in the public fields.
+public abstract class CommandSource implements Closeable {
+    // Arguments of the last command, steal_card and steal_all use att and hp for their attack and health limits,
+    // count_cards for its attack and health, kth_card att for its k
+    public String name;
+    public int att;
+    public int hp;
+    public int heal;
+
+    // Return the code of the next command, or CommandReader.EOF at the end of the input
+    public abstract int next() throws IOException;
+
+    // The command token that was not recognized
+    public String invalidCommand() {
+        return name;
+    }
+}
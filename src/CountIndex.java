@@ -0,0 +1,236 @@
+// CountIndex counts the cards of a deck by attack and health together: count(minAtt, hp) is the number of cards
+// with at least minAtt attack and more than hp health, which the deck's trees alone cannot answer without
+// going over every subtree whose health is mixed.
+// It is a binary trie over the 32 bits of the attack, the sign bit flipped so the order is the ints' order.
+// A card is counted at every node of its path that is a one-child, and at its leaf: the cards with at least
+// minAtt attack are then the one-children hanging off the path of minAtt where it takes the zero side,
+// plus the leaf of minAtt itself. Every node counts its cards in a counter, an AVL tree of their health values
+// with the number of cards of every value and of every subtree, so one counter is read in O(log n).
+// A count reads at most 33 counters, a change of a card writes one per set bit of its attack and its leaf,
+// so both are O(W log n) for the W = 32 bits of an attack, not O(log^2 n): the trie is as deep as the bits.
+// The counters are nodes of one struct of arrays, the way HealthArena keeps the health trees: slot 0 is NIL
+// with height -1, freed slots are linked through right[] and reused. Trie nodes stay once they are made.
+// The recursion of the counters is only log n deep.
+public class CountIndex {
+    static final int NIL = 0;
+    private static final int ROOT = 1;
+
+    // Trie nodes: the zero and one children, and the root of the node's counter
+    private int[] zero = new int[64];
+    private int[] one = new int[64];
+    private int[] counter = new int[64];
+    private int trieNodes = ROOT + 1;
+
+    // Counter nodes: the health value, the cards with it, the cards of the subtree, height and children
+    private int[] value = new int[64];
+    private int[] cards = new int[64];
+    private int[] total = new int[64];
+    private int[] height = new int[64];
+    private int[] left = new int[64];
+    private int[] right = new int[64];
+    private int used = 1;
+    private int free = NIL;
+
+    public CountIndex() {
+        height[NIL] = -1;
+    }
+
+    // Add delta cards of the stats, a negative delta takes out cards that were added
+    public void update(int att, int hp, int delta) {
+        int bits = att ^ Integer.MIN_VALUE;
+        int node = ROOT;
+        for (int bit = 31; bit >= 0; bit--) {
+            boolean isOne = (bits >>> bit & 1) != 0;
+            int child = isOne ? one[node] : zero[node];
+            if (child == NIL) {
+                child = newTrieNode();
+                if (isOne) {
+                    one[node] = child;
+                } else {
+                    zero[node] = child;
+                }
+            }
+            node = child;
+            if (isOne || bit == 0) {
+                int root = change(counter[node], hp, delta);
+                counter[node] = root;
+            }
+        }
+    }
+
+    // The number of cards with at least minAtt attack and more than hp health
+    public int count(int minAtt, int hp) {
+        int bits = minAtt ^ Integer.MIN_VALUE;
+        int result = 0;
+        int node = ROOT;
+        for (int bit = 31; bit >= 0; bit--) {
+            if ((bits >>> bit & 1) == 0) {
+                // Every attack under the one side is larger
+                result += above(counter[one[node]], hp);
+                node = zero[node];
+            } else {
+                node = one[node];
+            }
+            if (node == NIL) {
+                return result;
+            }
+        }
+        return result + above(counter[node], hp);
+    }
+
+    // The cards of the counter with more than hp health: a node over hp counts with its right subtree
+    private int above(int node, int hp) {
+        int result = 0;
+        while (node != NIL) {
+            if (value[node] > hp) {
+                result += cards[node] + total[right[node]];
+                node = left[node];
+            } else {
+                node = right[node];
+            }
+        }
+        return result;
+    }
+
+    private int newTrieNode() {
+        if (trieNodes == zero.length) {
+            int capacity = trieNodes + (trieNodes >> 1);
+            zero = copy(zero, capacity);
+            one = copy(one, capacity);
+            counter = copy(counter, capacity);
+        }
+        return trieNodes++;
+    }
+
+    // The counter of node with delta more cards of the value, returns its new root.
+    // The children are read into locals first, a new node may grow the arrays.
+    private int change(int node, int hp, int delta) {
+        if (node == NIL) {
+            return delta > 0 ? newCounterNode(hp, delta) : NIL;
+        }
+        if (hp < value[node]) {
+            int child = change(left[node], hp, delta);
+            left[node] = child;
+        } else if (hp > value[node]) {
+            int child = change(right[node], hp, delta);
+            right[node] = child;
+        } else {
+            cards[node] += delta;
+            if (cards[node] <= 0) {
+                return unlink(node);
+            }
+            total[node] += delta;
+            return node;
+        }
+        return rebalance(node);
+    }
+
+    // Take out the node, its successor takes its place when it has two children
+    private int unlink(int node) {
+        if (left[node] == NIL || right[node] == NIL) {
+            int child = left[node] != NIL ? left[node] : right[node];
+            freeNode(node);
+            return child;
+        }
+        int successor = right[node];
+        while (left[successor] != NIL) {
+            successor = left[successor];
+        }
+        value[node] = value[successor];
+        cards[node] = cards[successor];
+        right[node] = removeMin(right[node]);
+        return rebalance(node);
+    }
+
+    // Unlink the smallest node of the subtree, its value is already copied
+    private int removeMin(int node) {
+        if (left[node] == NIL) {
+            int child = right[node];
+            freeNode(node);
+            return child;
+        }
+        left[node] = removeMin(left[node]);
+        return rebalance(node);
+    }
+
+    private int newCounterNode(int hp, int count) {
+        int node = free;
+        if (node != NIL) {
+            free = right[node];
+        } else {
+            if (used == value.length) {
+                int capacity = used + (used >> 1);
+                value = copy(value, capacity);
+                cards = copy(cards, capacity);
+                total = copy(total, capacity);
+                height = copy(height, capacity);
+                left = copy(left, capacity);
+                right = copy(right, capacity);
+            }
+            node = used++;
+        }
+        value[node] = hp;
+        cards[node] = count;
+        total[node] = count;
+        height[node] = 0;
+        left[node] = NIL;
+        right[node] = NIL;
+        return node;
+    }
+
+    private static int[] copy(int[] values, int capacity) {
+        int[] grown = new int[capacity];
+        System.arraycopy(values, 0, grown, 0, values.length);
+        return grown;
+    }
+
+    private void freeNode(int node) {
+        right[node] = free;
+        free = node;
+    }
+
+    private void recount(int node) {
+        height[node] = Math.max(height[left[node]], height[right[node]]) + 1;
+        total[node] = cards[node] + total[left[node]] + total[right[node]];
+    }
+
+    private int balance(int node) {
+        return height[left[node]] - height[right[node]];
+    }
+
+    private int rebalance(int node) {
+        recount(node);
+        int balance = balance(node);
+        if (balance > 1) {
+            if (balance(left[node]) < 0) {
+                left[node] = rotateLeft(left[node]);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (balance(right[node]) > 0) {
+                right[node] = rotateRight(right[node]);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private int rotateRight(int y) {
+        int x = left[y];
+        left[y] = right[x];
+        right[x] = y;
+        recount(y);
+        recount(x);
+        return x;
+    }
+
+    private int rotateLeft(int x) {
+        int y = right[x];
+        right[x] = left[y];
+        left[y] = x;
+        recount(x);
+        recount(y);
+        return y;
+    }
+}
@@ -0,0 +1,46 @@
+// DeckIndex is what a GameSession needs from its deck: the cards that can be played, found by the four battle
+// priorities and by the Stranger's steal. Every search takes the card it returns out of the deck, and returns
+// CardStore.NONE when there is no such card. AttackTree is the index the game uses; another index can be
+// given to a GameSession as long as it picks exactly the same cards.
+public interface DeckIndex {
+
+    int size();
+
+    void insert(int card);
+
+    // Put back the card that was taken last, after its stats changed
+    void reinsert(int card);
+
+    // Add the first count cards of the array, which may be reordered
+    void insertAll(int[] cards, int count);
+
+    void delete(int card);
+
+    // Smallest attack of at least hp that has a card surviving att, the least healthy such card
+    int firstPriority(int att, int hp);
+
+    // Largest attack below hp that has a card surviving att, the least healthy such card
+    int secondPriority(int att, int hp);
+
+    // Smallest attack of at least hp, its least healthy card
+    int thirdPriority(int att, int hp);
+
+    // Largest attack, its least healthy card
+    int fourthPriority(int att, int hp);
+
+    // Smallest attack above attackLimit that has a card with more health than healthLimit, the least healthy such card
+    int stealCard(int attackLimit, int healthLimit);
+
+    // Every card stealCard could take, all at once: returns their number, they are the first ones of stolen()
+    // in the order stealCard would take them
+    int stealAll(int attackLimit, int healthLimit);
+
+    int[] stolen();
+
+    // The number of cards with at least minAtt attack and more than hp health, nothing is taken out
+    int countCards(int minAtt, int hp);
+
+    // The card at place k, from 0, of the cards by attack, then health, from the largest, then in the order they came.
+    // NONE if the deck has k cards or less, nothing is taken out
+    int kthStrongest(int k);
+}
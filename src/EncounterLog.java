@@ -0,0 +1,177 @@
+import java.io.*;
+import java.nio.charset.Charset;
+
+// EncounterLog is the binary form of an encounter file, replayed by BinaryCommandReader without any parsing.
+// It starts with the bytes "NPLG" and a version byte, then every command is an opcode byte and its arguments:
+//   NEW_CARD    name, att, hp        draw_card with a name not seen before, it gets the next name id
+//   DRAW_CARD   name id, att, hp     draw_card with a known name
+//   BATTLE      att, hp, heal
+//   STEAL_CARD  attack limit, health limit
+//   COUNT_CARDS att, hp
+//   KTH_CARD    k
+//   STEAL_ALL   attack limit, health limit
+//   FIND_WINNING, DECK_COUNT, DISCARD_PILE_COUNT
+//   INVALID     token                the command the text file stopped at, it stops the replay the same way
+//   ERROR       message              arguments the text file could not be read with, the replay fails the same way
+// Numbers are varints, the ints zigzag-coded so negative stats stay short; a name is its UTF-8 length and bytes.
+// The end of the file is the end of the log.
+public class EncounterLog {
+    static final byte[] MAGIC = {'N', 'P', 'L', 'G'};
+    static final int VERSION = 1;
+
+    static final int NEW_CARD = 0;
+    static final int DRAW_CARD = 1;
+    static final int BATTLE = 2;
+    static final int STEAL_CARD = 3;
+    static final int FIND_WINNING = 4;
+    static final int DECK_COUNT = 5;
+    static final int DISCARD_PILE_COUNT = 6;
+    static final int INVALID = 7;
+    static final int COUNT_CARDS = 8;
+    static final int KTH_CARD = 9;
+    static final int STEAL_ALL = 10;
+    static final int ERROR = 11;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Convert a text encounter file, returns the number of commands written.
+    // A line whose arguments cannot be read, a bad number or a missing argument, ends the log with an ERROR record
+    // of the message the text replay fails with, the commands before it are kept and played like the text ones.
+    public static long convert(String textFile, String binaryFile) throws IOException {
+        long commands = 0;
+        NameTable names = new NameTable();
+        try (CommandReader reader = new CommandReader(new FileInputStream(textFile));
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(binaryFile), 1 << 16)) {
+            out.write(MAGIC);
+            out.write(VERSION);
+            while (true) {
+                int command;
+                try {
+                    command = reader.next();
+                } catch (RuntimeException e) {
+                    // Nothing after it is played either
+                    out.write(ERROR);
+                    writeName(out, String.valueOf(e.getMessage()));
+                    return commands + 1;
+                }
+                if (command == CommandReader.EOF) {
+                    return commands;
+                }
+                switch (command) {
+                    case CommandReader.DRAW_CARD: {
+                        int known = names.size();
+                        int id = names.intern(reader.name);
+                        if (id == known) {
+                            out.write(NEW_CARD);
+                            writeName(out, reader.name);
+                        } else {
+                            out.write(DRAW_CARD);
+                            writeVarint(out, id);
+                        }
+                        writeInt(out, reader.att);
+                        writeInt(out, reader.hp);
+                        break;
+                    }
+                    case CommandReader.BATTLE:
+                        out.write(BATTLE);
+                        writeInt(out, reader.att);
+                        writeInt(out, reader.hp);
+                        writeInt(out, reader.heal);
+                        break;
+                    case CommandReader.STEAL_CARD:
+                        out.write(STEAL_CARD);
+                        writeInt(out, reader.att);
+                        writeInt(out, reader.hp);
+                        break;
+                    case CommandReader.COUNT_CARDS:
+                        out.write(COUNT_CARDS);
+                        writeInt(out, reader.att);
+                        writeInt(out, reader.hp);
+                        break;
+                    case CommandReader.KTH_CARD:
+                        out.write(KTH_CARD);
+                        writeInt(out, reader.att);
+                        break;
+                    case CommandReader.STEAL_ALL:
+                        out.write(STEAL_ALL);
+                        writeInt(out, reader.att);
+                        writeInt(out, reader.hp);
+                        break;
+                    case CommandReader.FIND_WINNING:
+                        out.write(FIND_WINNING);
+                        break;
+                    case CommandReader.DECK_COUNT:
+                        out.write(DECK_COUNT);
+                        break;
+                    case CommandReader.DISCARD_PILE_COUNT:
+                        out.write(DISCARD_PILE_COUNT);
+                        break;
+                    default:
+                        // Nothing after it is played, so nothing after it is kept
+                        out.write(INVALID);
+                        writeName(out, reader.invalidCommand());
+                        return commands + 1;
+                }
+                commands++;
+            }
+        }
+    }
+
+    static void writeName(OutputStream out, String name) throws IOException {
+        byte[] bytes = name.getBytes(UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static void writeInt(OutputStream out, int value) throws IOException {
+        writeVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+    // 7 bits a byte, low bits first, the high bit set on every byte but the last
+    static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    // The same encoding read back from a stream, for the files that are not mapped
+
+    static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("File ends inside a number");
+            }
+            value |= (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw new IOException("Number longer than 5 bytes");
+    }
+
+    static int readInt(InputStream in) throws IOException {
+        int value = readVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static String readName(InputStream in) throws IOException {
+        int length = readVarint(in);
+        if (length < 0) {
+            throw new IOException("Negative name length");
+        }
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(bytes, read, length - read);
+            if (n < 0) {
+                throw new EOFException("File ends inside a name");
+            }
+            read += n;
+        }
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,342 @@
+// GameSession holds everything one game needs: the cards, the deck, the discard pile and the scores.
+// Cards are int handles of the session's CardStore, CardStore.NONE stands for no card.
+// Sessions share nothing, so any number of games can be simulated in one JVM, each on its own thread.
+// The methods return their results as plain values (and the last* fields for battle),
+// formatting them into the output lines is left to the caller.
+public class GameSession {
+    // -Dnightpass.pool=true gives every session a NodePool
+    static final boolean POOL_NODES = Boolean.getBoolean("nightpass.pool");
+    // -Dnightpass.bulkload=true puts the opening draws of a game into the deck in one bulk load
+    static final boolean LOAD_OPENING = Boolean.getBoolean("nightpass.bulkload");
+
+    // Initializing the deck and discard pile
+    final CardStore cards;
+    final DeckIndex deck;
+    final HealthTree discardPile;
+    // Null unless metrics are on
+    final Metrics metrics;
+    int survivorPoint = 0;
+    int strangerPoint = 0;
+    // How the Survivor picks a card and how the fire phase revives, the game's own unless setPolicies changed them
+    SelectionPolicy selection = PriorityOrder.DEFAULT;
+    RevivalPolicy revival = GreedyRevival.DEFAULT;
+
+    // Result of the last battle
+    int lastPriority;
+    int lastPlayed = CardStore.NONE;
+    boolean lastReturned;
+    int lastRevived;
+
+    // Cards of the opening drawn but not in the deck yet
+    private int[] opening;
+    private int openingCount;
+
+    public GameSession() {
+        this(POOL_NODES);
+    }
+
+    // With pooled set the deck recycles its nodes through a pool of this session
+    public GameSession(boolean pooled) {
+        this(new CardStore(), pooled);
+    }
+
+    GameSession(CardStore cards, boolean pooled) {
+        this(cards, pooled, true);
+    }
+
+    // Without metered the game has no Metrics even when they are on, for copies nothing closes
+    GameSession(CardStore cards, boolean pooled, boolean metered) {
+        this(cards, new AttackTree(cards, pooled ? new NodePool() : null), metered);
+    }
+
+    // A game on another deck index, which must hold its cards in the given store
+    public GameSession(CardStore cards, DeckIndex deck) {
+        this(cards, deck, true);
+    }
+
+    private GameSession(CardStore cards, DeckIndex deck, boolean metered) {
+        this.cards = cards;
+        this.deck = deck;
+        this.discardPile = new HealthTree(true, cards);
+        this.metrics = metered ? Metrics.open() : null;
+        // The trees of the game count their work into its metrics, another index only gets its commands timed
+        if (metrics != null) {
+            discardPile.arena.metrics = metrics;
+            if (deck instanceof AttackTree) {
+                ((AttackTree) deck).countInto(metrics);
+            }
+        }
+    }
+
+    // Creating cards, and adding them to the deck
+    public int drawCard(String name, int att, int hp) {
+        int card = cards.add(name, att, hp);
+        deck.insert(card);
+        return card;
+    }
+
+    // A draw_card of the opening, the run of draws a game starts with: the card is made, but it only goes into
+    // the deck when loadOpening puts the whole opening in at once. Nothing may look at the deck before that.
+    public int drawOpening(String name, int att, int hp) {
+        int card = cards.add(name, att, hp);
+        if (opening == null) {
+            opening = new int[64];
+        } else if (openingCount == opening.length) {
+            int[] grown = new int[2 * opening.length];
+            System.arraycopy(opening, 0, grown, 0, openingCount);
+            opening = grown;
+        }
+        opening[openingCount++] = card;
+        return card;
+    }
+
+    // Put the opening into the deck with one insertAll, a bulk load when the deck is empty.
+    // Cards with the same stats keep the order they were drawn in.
+    public void loadOpening() {
+        if (openingCount > 0) {
+            deck.insertAll(opening, openingCount);
+        }
+        opening = null;
+        openingCount = 0;
+    }
+
+    // Play the rest of the game with other policies
+    public void setPolicies(SelectionPolicy selection, RevivalPolicy revival) {
+        this.selection = selection;
+        this.revival = revival;
+    }
+
+    // Get the winner by points
+    public boolean survivorWins() {
+        return survivorPoint >= strangerPoint;
+    }
+
+    public int winningScore() {
+        return Math.max(strangerPoint, survivorPoint);
+    }
+
+    // Return the size of the deck
+    public int deckCount() {
+        return deck.size();
+    }
+
+    // Return the size of the discard pile
+    public int discardPileCount() {
+        return discardPile.size();
+    }
+
+    // The number of cards in the deck with at least att attack and more than hp health
+    public int countCards(int att, int hp) {
+        return deck.countCards(att, hp);
+    }
+
+    // The k-th strongest card of the deck, from 1, CardStore.NONE if the deck has less than k cards
+    public int kthCard(int k) {
+        if (k < 1) {
+            return CardStore.NONE;
+        }
+        return deck.kthStrongest(k - 1);
+    }
+
+    // Battle and Heal phase, returns the priority the card was found with, 0 if there was no card to play
+    public int battle(int att, int hp, int heal) {
+        int suitable = selection.select(deck, att, hp);
+        int priority = suitable == CardStore.NONE ? 0 : priority(suitable, att, hp);
+
+        // Update points based on priority
+        switch (priority) {
+            // Stranger automatically kills you(+2)
+            case 0:
+                strangerPoint += 2;
+                break;
+            // Survivor kills(+2), Stranger just damages(+1)
+            case 1:
+                strangerPoint += 1;
+                survivorPoint += 2;
+                break;
+
+            case 2:
+            // Survivor just damages(+1), Stranger just damages(+1)
+                strangerPoint += 1;
+                survivorPoint += 1;
+                break;
+            // Survivor kills(+2), Stranger kills(+2)
+            case 3:
+                strangerPoint += 2;
+                survivorPoint += 2;
+                break;
+            // Survivor just damages(+1), Stranger kills(+2)
+            case 4:
+                strangerPoint += 2;
+                survivorPoint += 1;
+                break;
+        }
+
+        boolean returned = false;
+        // If there is any suitable card, take damage
+        if (suitable != CardStore.NONE) {
+            cards.takeDamage(suitable, att);
+            // If the card survives
+            if (cards.curHp(suitable) > 0) {
+                cards.changeAtt(suitable);
+                returned = true;
+                // Its node and path are usually still there from the priority search
+                deck.reinsert(suitable);
+            }
+            // If the card gets killed
+            else {
+                discardPile.insert(suitable);
+            }
+        }
+
+        // Healing phase
+        int reviveCounter = revival.revive(this, heal);
+
+        lastPriority = priority;
+        lastPlayed = suitable;
+        lastReturned = returned;
+        lastRevived = reviveCounter;
+        return priority;
+    }
+
+    // What the card does against a Stranger card of att and hp: 1 it survives and kills, 2 it only survives,
+    // 3 it only kills, 4 neither. The four searches of PriorityOrder find exactly such cards, in this order.
+    int priority(int card, int att, int hp) {
+        boolean survives = cards.curHp[card] > att;
+        boolean kills = cards.curAtt[card] >= hp;
+        if (survives) {
+            return kills ? 1 : 2;
+        }
+        return kills ? 3 : 4;
+    }
+
+    // Fire phase: revive the discarded cards with the most missing health that the heal can fully cover,
+    // then spend what is left partially on the one with the least. Returns the number of cards fully revived.
+    // The whole greedy sequence comes out of the discard pile in one walk, and goes into the deck in one bulk insert.
+    public int revive(int heal) {
+        return revive(heal, true);
+    }
+
+    // Same, without the partial revival when partial is not set
+    int revive(int heal, boolean partial) {
+        if (heal <= 0 || discardPile.size() == 0) {
+            return 0;
+        }
+        // A negative missing health gives heal back, then the sequence has to be picked one card at a time
+        if (discardPile.getHpMin() < 0) {
+            return reviveOneByOne(heal, partial);
+        }
+        int reviveCounter = discardPile.pollFitting(heal);
+        if (metrics != null) {
+            metrics.reviveIterations += reviveCounter;
+        }
+        int[] revived = discardPile.polled();
+        for (int i = 0; i < reviveCounter; i++) {
+            heal -= cards.missingHp(revived[i]);
+            cards.fullyRevive(revived[i]);
+        }
+        deck.insertAll(revived, reviveCounter);
+
+        // If nothing else fits, try to find the minHp possible, and partially revive it
+        if (partial && heal > 0 && discardPile.size() > 0) {
+            if (metrics != null) {
+                metrics.reviveIterations++;
+            }
+            int revive = discardPile.pollMinHp();
+            cards.partialRevive(revive, heal);
+            discardPile.insert(revive);
+        }
+        return reviveCounter;
+    }
+
+    private int reviveOneByOne(int heal, boolean partial) {
+        int reviveCounter = 0;
+        int revive;
+        // Continue until there are no more heal(if there are suitable cards)
+        while (heal > 0) {
+            if (discardPile.size() == 0)
+            {
+                break;
+            }
+            if (metrics != null) {
+                metrics.reviveIterations++;
+            }
+            // Find the cards that can be healed fully
+            revive = discardPile.getMaxHpSmaller(heal);
+            if (revive == CardStore.NONE) {
+                if (!partial) {
+                    break;
+                }
+                // If not, try to find the minHp possible, and partially revive it
+                revive = discardPile.getMinHp();
+                if (revive != CardStore.NONE) {
+                    discardPile.delete(revive);
+                    cards.partialRevive(revive, heal);
+                    discardPile.insert(revive);
+                    break;
+                }
+            }
+            // If it is fully healable, heal it, and add it to the deck
+            else {
+                discardPile.delete(revive);
+                heal -= cards.missingHp(revive);
+                cards.fullyRevive(revive);
+                reviveCounter++;
+                deck.insert(revive);
+            }
+        }
+        return reviveCounter;
+    }
+
+    // The other fire phase: revive as many discarded cards as the heal can fully cover, the least missing health
+    // first, then spend what is left partially on the next one. Returns the number of cards fully revived.
+    // The discard pile finds how many fit in one walk down its sums and gives them out of one split.
+    int reviveSmallestFirst(int heal) {
+        if (heal <= 0 || discardPile.size() == 0) {
+            return 0;
+        }
+        int reviveCounter;
+        // A negative missing health gives heal back, then the cards are taken one at a time
+        if (discardPile.getHpMin() < 0) {
+            reviveCounter = 0;
+            while (discardPile.size() > 0 && cards.missingHp(discardPile.getMinHp()) <= heal) {
+                int revive = discardPile.pollMinHp();
+                heal -= cards.missingHp(revive);
+                cards.fullyRevive(revive);
+                deck.insert(revive);
+                reviveCounter++;
+            }
+        } else {
+            reviveCounter = discardPile.pollSmallest(heal);
+            int[] revived = discardPile.polled();
+            for (int i = 0; i < reviveCounter; i++) {
+                heal -= cards.missingHp(revived[i]);
+                cards.fullyRevive(revived[i]);
+            }
+            deck.insertAll(revived, reviveCounter);
+        }
+        if (metrics != null) {
+            metrics.reviveIterations += reviveCounter;
+        }
+
+        if (heal > 0 && discardPile.size() > 0) {
+            if (metrics != null) {
+                metrics.reviveIterations++;
+            }
+            int revive = discardPile.pollMinHp();
+            cards.partialRevive(revive, heal);
+            discardPile.insert(revive);
+        }
+        return reviveCounter;
+    }
+
+    // Stealing the suitable card, CardStore.NONE if there is none
+    public int stealCard(int attackLimit, int healthLimit) {
+        return deck.stealCard(attackLimit, healthLimit);
+    }
+
+    // Stealing every suitable card, returns their number: they are the first ones of deck.stolen()
+    public int stealAll(int attackLimit, int healthLimit) {
+        return deck.stealAll(attackLimit, healthLimit);
+    }
+}
@@ -0,0 +1,23 @@
+// GreedyRevival is the game's fire phase, GameSession.revive: the cards with the most missing health the heal
+// can fully cover first, then what is left goes partially to the card with the least.
+// FULL_ONLY skips the partial revival, the heal that no card fits is lost.
+public class GreedyRevival implements RevivalPolicy {
+    public static final GreedyRevival DEFAULT = new GreedyRevival(true);
+    public static final GreedyRevival FULL_ONLY = new GreedyRevival(false);
+
+    private final boolean partial;
+
+    private GreedyRevival(boolean partial) {
+        this.partial = partial;
+    }
+
+    @Override
+    public int revive(GameSession session, int heal) {
+        return session.revive(heal, partial);
+    }
+
+    @Override
+    public String toString() {
+        return partial ? "greedy" : "full";
+    }
+}
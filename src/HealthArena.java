@@ -0,0 +1,162 @@
+// HealthArena holds the nodes of HealthTrees as a struct of arrays, so a node is an int slot instead of an object:
+// node n has the key value[n], the stats of its subtree maxHp[n], minHp[n], total[n], the number of cards in it,
+// and sum[n], the sum of their values, height[n], the children left[n] and right[n], and its cards, in card[n] while there is one and in queue[n]
+// once a second one comes.
+// All the inner trees of a deck share one arena, the discard pile has its own.
+// Slot 0 is NIL, the empty subtree: its height is -1 and its stats are the neutral ones, so the trees read them
+// without checking for it. Freed slots are linked through right[] and handed out again first,
+// the arrays grow by half when every slot is in use.
+public class HealthArena {
+    // Deepest path of a tree, an AVL tree of 2^31 nodes is less than 45 high
+    static final int MAX_HEIGHT = 64;
+    static final int NIL = 0;
+
+    final CardStore store;
+    int[] value;
+    int[] maxHp;
+    int[] minHp;
+    int[] total;
+    long[] sum;
+    int[] height;
+    int[] left;
+    int[] right;
+    int[] card;
+    Queue[] queue;
+    // Slots handed out so far, and the first free one
+    private int used = 1;
+    private int free = NIL;
+
+    // Path of the last walk of any tree of the arena and the direction taken at every node of it,
+    // also the stack of the in-order walks
+    final int[] path = new int[MAX_HEIGHT];
+    final boolean[] pathLeft = new boolean[MAX_HEIGHT];
+
+    // Cards taken by the last pollFitting, the values of the nodes it emptied and the nodes it walked
+    int[] polled;
+    int[] emptied;
+    int[] walked;
+
+    // Counts the rotations of the trees when the game has metrics
+    Metrics metrics;
+
+    public HealthArena(CardStore store) {
+        this(store, 16);
+    }
+
+    public HealthArena(CardStore store, int capacity) {
+        this.store = store;
+        capacity = Math.max(capacity, 2);
+        value = new int[capacity];
+        maxHp = new int[capacity];
+        minHp = new int[capacity];
+        total = new int[capacity];
+        sum = new long[capacity];
+        height = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        card = new int[capacity];
+        queue = new Queue[capacity];
+        height[NIL] = -1;
+        maxHp[NIL] = Integer.MIN_VALUE;
+        minHp[NIL] = Integer.MAX_VALUE;
+    }
+
+    // A leaf with the key and the card
+    int alloc(int cardValue, int first) {
+        int node = free;
+        if (node != NIL) {
+            free = right[node];
+        } else {
+            if (used == value.length) {
+                grow();
+            }
+            node = used++;
+        }
+        value[node] = cardValue;
+        maxHp[node] = cardValue;
+        minHp[node] = cardValue;
+        total[node] = 1;
+        sum[node] = cardValue;
+        height[node] = 0;
+        left[node] = NIL;
+        right[node] = NIL;
+        card[node] = first;
+        return node;
+    }
+
+    // The node's cards must all be gone
+    void free(int node) {
+        queue[node] = null;
+        right[node] = free;
+        free = node;
+    }
+
+    // The queue of a node: a single card stays in card[], the Queue is only made for the second one
+    void enqueue(int node, int c) {
+        Queue cards = queue[node];
+        if (cards != null) {
+            cards.enqueue(c);
+        } else if (card[node] == CardStore.NONE) {
+            card[node] = c;
+        } else {
+            cards = new Queue();
+            cards.enqueue(card[node]);
+            cards.enqueue(c);
+            card[node] = CardStore.NONE;
+            queue[node] = cards;
+        }
+    }
+
+    int dequeue(int node) {
+        Queue cards = queue[node];
+        if (cards != null) {
+            return cards.dequeue();
+        }
+        int c = card[node];
+        card[node] = CardStore.NONE;
+        return c;
+    }
+
+    int peek(int node) {
+        Queue cards = queue[node];
+        return cards != null ? cards.peek() : card[node];
+    }
+
+    int count(int node) {
+        Queue cards = queue[node];
+        if (cards != null) {
+            return cards.size;
+        }
+        return card[node] == CardStore.NONE ? 0 : 1;
+    }
+
+    // The card at the given place of the node's queue, from the front
+    int cardAt(int node, int index) {
+        Queue cards = queue[node];
+        return cards != null ? cards.get(index) : card[node];
+    }
+
+    private void grow() {
+        int capacity = value.length + (value.length >> 1);
+        value = copy(value, capacity);
+        maxHp = copy(maxHp, capacity);
+        minHp = copy(minHp, capacity);
+        total = copy(total, capacity);
+        long[] sums = new long[capacity];
+        System.arraycopy(sum, 0, sums, 0, sum.length);
+        sum = sums;
+        height = copy(height, capacity);
+        left = copy(left, capacity);
+        right = copy(right, capacity);
+        card = copy(card, capacity);
+        Queue[] grown = new Queue[capacity];
+        System.arraycopy(queue, 0, grown, 0, queue.length);
+        queue = grown;
+    }
+
+    private static int[] copy(int[] values, int capacity) {
+        int[] grown = new int[capacity];
+        System.arraycopy(values, 0, grown, 0, values.length);
+        return grown;
+    }
+}
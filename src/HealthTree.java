@@ -1,19 +1,38 @@
-// HealthTree class implements a AVL tree of HealthNodes, which is sorted by the health/missing health of the cards.
-// The class act as the inner tree for the deck.
+// HealthTree class implements a AVL tree of health nodes, which is sorted by the health/missing health of the cards.
+// The class act as the inner tree for the deck. The cards are handles of the game's CardStore.
+// The nodes are slots of a HealthArena, which the inner trees of a deck share, so a tree itself is just its root slot.
+// Insert, delete and the searches are loops: the slots from the root down are kept in the arena's path,
+// so the rebalancing and the stat updates are done on the way back up without any recursion.
 public class HealthTree {
-    HealthNode root;
+    static final int NIL = HealthArena.NIL;
+
+    int root = NIL;
     boolean useMissingHp;
     int size;
-    
-    public HealthTree(boolean useMissingHp) {
-        this.root = null;
+    final HealthArena arena;
+    // The two sides of the last split, and the node of the key if the tree had it
+    private int splitLeft;
+    private int splitRight;
+    private int splitMid;
+
+    public HealthTree(boolean useMissingHp, CardStore store) {
+        this(useMissingHp, new HealthArena(store));
+    }
+
+    // The inner trees of a deck pass the deck's arena
+    public HealthTree(boolean useMissingHp, HealthArena arena) {
         this.useMissingHp = useMissingHp;
+        this.arena = arena;
     }
 
     public int size() {
         return size;
     }
 
+    public boolean isEmpty() {
+        return root == NIL;
+    }
+
     private void increaseSize() {
         size++;
     }
@@ -23,63 +42,82 @@ public class HealthTree {
     }
 
     public int getHpMax(){
-        if (root == null){
+        if (root == NIL){
             return 0;
         }
-        return root.maxHp;
+        return arena.maxHp[root];
     }
 
-    private int height(HealthNode node) {
-        if (node == null)
-            return -1;
-        return node.height;
+    public int getHpMin(){
+        if (root == NIL){
+            return 0;
+        }
+        return arena.minHp[root];
     }
 
-    // Updating the max-min values
-    private void updateHpStats(HealthNode node) {
-        if (node != null) {
-            // Checking right is enough
-            int rightMax;
-            if (node.right != null) {
-                rightMax = node.right.maxHp;
-            } else {
-                rightMax = -1;
-            }
-            node.maxHp = Math.max(node.nodeHp, rightMax);
+    // The key of the card in this tree
+    private int value(int card) {
+        return useMissingHp ? arena.store.missingHp[card] : arena.store.curHp[card];
+    }
 
-            // Checking left is enough
-            int leftMin;
-            if (node.left != null) {
-                leftMin = node.left.minHp;
-            } else {
-                leftMin = Integer.MAX_VALUE;
-            }
+    // Updating the max-min values, the card count and the sum, NIL holds Integer.MIN_VALUE as its max, Integer.MAX_VALUE as its min
+    // and 0 cards
+    private void updateHpStats(int node) {
+        HealthArena a = arena;
+        // Checking right is enough
+        a.maxHp[node] = Math.max(a.value[node], a.maxHp[a.right[node]]);
+        // Checking left is enough
+        a.minHp[node] = Math.min(a.value[node], a.minHp[a.left[node]]);
+        recount(node);
+    }
 
-            node.minHp = Math.min(node.nodeHp, leftMin);
+    // The card count and the sum of the node's subtree
+    private void recount(int node) {
+        HealthArena a = arena;
+        int count = a.count(node);
+        a.total[node] = count + a.total[a.left[node]] + a.total[a.right[node]];
+        a.sum[node] = (long) a.value[node] * count + a.sum[a.left[node]] + a.sum[a.right[node]];
+    }
 
+    // The queue of the node changed by delta cards without a change of the tree, so only the card counts
+    // and the sums of the node and of the nodes above it in the path change
+    private void addCards(int node, int depth, int delta) {
+        HealthArena a = arena;
+        long change = (long) a.value[node] * delta;
+        a.total[node] += delta;
+        a.sum[node] += change;
+        for (int i = 0; i < depth; i++) {
+            a.total[a.path[i]] += delta;
+            a.sum[a.path[i]] += change;
         }
     }
 
-    private int getBalance(HealthNode node) {
-        if (node == null)
+    private int getBalance(int node) {
+        if (node == NIL)
             return 0;
-        return height(node.left) - height(node.right);
+        return arena.height[arena.left[node]] - arena.height[arena.right[node]];
+    }
+
+    private void updateHeight(int node) {
+        HealthArena a = arena;
+        a.height[node] = Math.max(a.height[a.left[node]], a.height[a.right[node]]) + 1;
     }
 
-    private HealthNode rotateRight(HealthNode y) {
-        if (y == null || y.left == null) {
+    private int rotateRight(int y) {
+        HealthArena a = arena;
+        int x = a.left[y];
+        if (x == NIL) {
             return y;
         }
-
-        HealthNode x = y.left;
-        HealthNode temp = x.right;
-
-        x.right = y;
-        y.left = temp;
+        if (a.metrics != null) {
+            a.metrics.healthRotations++;
+        }
+        a.left[y] = a.right[x];
+        a.right[x] = y;
 
         // Update heights
-        y.height = Math.max(height(y.left), height(y.right)) + 1;
-        x.height = Math.max(height(x.left), height(x.right)) + 1;
+        updateHeight(y);
+        updateHeight(x);
 
         // Update max values
         updateHpStats(y);
@@ -88,216 +126,626 @@ public class HealthTree {
         return x;
     }
 
-    private HealthNode rotateLeft(HealthNode x) {
-        if (x == null || x.right == null) {
+    private int rotateLeft(int x) {
+        HealthArena a = arena;
+        int y = a.right[x];
+        if (y == NIL) {
             return x;
         }
-        HealthNode y = x.right;
-        HealthNode temp = y.left;
-
-        y.left = x;
-        x.right = temp;
+        if (a.metrics != null) {
+            a.metrics.healthRotations++;
+        }
+        a.right[x] = a.left[y];
+        a.left[y] = x;
 
         // Update heights
-        x.height = Math.max(height(x.left), height(x.right)) + 1;
-        y.height = Math.max(height(y.left), height(y.right)) + 1;
+        updateHeight(x);
+        updateHeight(y);
 
         // Update max values
-        updateHpStats(y);
         updateHpStats(x);
+        updateHpStats(y);
 
         return y;
     }
 
-    public void insert(Card card) {
-        root = insertNode(root, card);
+    // Locate the correct location, then add to Queue
+    public void insert(int card) {
+        int cardValue = value(card);
+        HealthArena a = arena;
+        int[] path = a.path;
+        boolean[] left = a.pathLeft;
+        int depth = 0;
+        int node = root;
+        while (node != NIL) {
+            if (cardValue == a.value[node]) {
+                // Same value, only the counts change above
+                a.enqueue(node, card);
+                addCards(node, depth, 1);
+                increaseSize();
+                return;
+            }
+            path[depth] = node;
+            left[depth] = cardValue < a.value[node];
+            node = left[depth] ? a.left[node] : a.right[node];
+            depth++;
+        }
+        link(depth, a.alloc(cardValue, card));
+        rebalancePath(depth - 1);
         increaseSize();
     }
 
-    // Locate the correct location, then add to Queue
-    public HealthNode insertNode(HealthNode node, Card card) {
-        if (node == null)
-            return new HealthNode(card, useMissingHp);
+    // Add the cards from index from up to to, sorted by their value: one walk for every value,
+    // the cards of a value are put into its queue in the order they come
+    public void insertAll(int[] cards, int from, int to) {
+        HealthArena a = arena;
+        int[] path = a.path;
+        boolean[] left = a.pathLeft;
+        while (from < to) {
+            int cardValue = value(cards[from]);
+            int end = from + 1;
+            while (end < to && value(cards[end]) == cardValue) {
+                end++;
+            }
+            int depth = 0;
+            int node = root;
+            while (node != NIL && a.value[node] != cardValue) {
+                path[depth] = node;
+                left[depth] = cardValue < a.value[node];
+                node = left[depth] ? a.left[node] : a.right[node];
+                depth++;
+            }
+            int i = from;
+            if (node == NIL) {
+                node = a.alloc(cardValue, cards[i++]);
+                while (i < end) {
+                    a.enqueue(node, cards[i++]);
+                }
+                a.total[node] = end - from;
+                a.sum[node] = (long) cardValue * (end - from);
+                link(depth, node);
+                rebalancePath(depth - 1);
+            } else {
+                while (i < end) {
+                    a.enqueue(node, cards[i++]);
+                }
+                addCards(node, depth, end - from);
+            }
+            size += end - from;
+            from = end;
+        }
+    }
 
-        int cardValue = useMissingHp ? card.missingHp : card.curHp;
-        if (cardValue < node.nodeHp)
-            node.left = insertNode(node.left, card);
-        else if (cardValue > node.nodeHp)
-            node.right = insertNode(node.right, card);
-        else {
+    // insertAll for an empty tree: the cards from index from up to to, sorted by their value, are queued into
+    // one slot per value, then the tree is built from the slots. slots must hold to - from slots.
+    public void load(int[] cards, int from, int to, int[] slots) {
+        HealthArena a = arena;
+        int count = 0;
+        int cardCount = to - from;
+        while (from < to) {
+            int cardValue = value(cards[from]);
+            int slot = a.alloc(cardValue, cards[from++]);
+            while (from < to && value(cards[from]) == cardValue) {
+                a.enqueue(slot, cards[from++]);
+            }
+            slots[count++] = slot;
+        }
+        build(slots, count, cardCount);
+    }
 
-            node.cards.enqueue(card);
-            return node;
+    // Make the tree, which must be empty, of the slots: they are in increasing value order, their cards are
+    // already queued and count in total. The middle slot becomes the root and so on down, so the tree
+    // comes out balanced in O(n) without a rotation.
+    void build(int[] nodes, int count, int cards) {
+        root = buildRange(nodes, 0, count);
+        size = cards;
+    }
+
+    // The subtree of nodes[from..to), the recursion is only log n deep
+    private int buildRange(int[] nodes, int from, int to) {
+        if (from == to) {
+            return NIL;
         }
-        return rebalance(node);
+        int mid = (from + to) >>> 1;
+        int node = nodes[mid];
+        HealthArena a = arena;
+        a.left[node] = buildRange(nodes, from, mid);
+        a.right[node] = buildRange(nodes, mid + 1, to);
+        updateHeight(node);
+        updateHpStats(node);
+        return node;
     }
 
     // Method to find the node with minimum health value in a subtree
-    public HealthNode minValueNode(HealthNode node) {
-        HealthNode current = node;
-        while (current.left != null)
+    public int minValueNode(int node) {
+        int current = node;
+        while (arena.left[current] != NIL)
         {
-            current = current.left;
+            current = arena.left[current];
         }
         return current;
     }
-    
-    public void delete(Card card) {
-        if (useMissingHp) {
-            root = deleteNode(root, card.missingHp);
-        } 
-        else {
-            root = deleteNode(root, card.curHp);
+
+    // Locate the node, extract the card, if Queue is completely empty, delete the node itself
+    public void delete(int card) {
+        int nodeHp = value(card);
+        HealthArena a = arena;
+        int[] path = a.path;
+        boolean[] left = a.pathLeft;
+        int depth = 0;
+        int node = root;
+        while (node != NIL && a.value[node] != nodeHp) {
+            path[depth] = node;
+            left[depth] = nodeHp < a.value[node];
+            node = left[depth] ? a.left[node] : a.right[node];
+            depth++;
         }
         decreaseSize();
+        if (node == NIL) {
+            return;
+        }
+
+        // When find, extract the card
+        poll(node, depth);
     }
-    
-    // Locate the node, extract the card, if Queue is completely empty, delete the node itself
-    private HealthNode deleteNode(HealthNode node, int nodeHp) {
-        if (node == null)
-            return null;
-    
-        if (nodeHp < node.nodeHp) {
-            node.left = deleteNode(node.left, nodeHp);
-        } 
-        else if (nodeHp > node.nodeHp) {
-            node.right = deleteNode(node.right, nodeHp);
-        } 
-        else {
-            // When find, extract the card
-            node.cards.dequeue();
-    
-            if (node.cards.size == 0) {
-                if (node.left == null)
-                    return node.right;
-                else if (node.right == null)
-                    return node.left;
-    
-                HealthNode minNode = minValueNode(node.right);
-
-                node.nodeHp = minNode.nodeHp;
-                node.cards = minNode.cards;
-    
-                node.right = deleteNodeCompletely(node.right, minNode.nodeHp);
-            }
+
+    // Take the first card of the node at the given depth, if Queue is completely empty, delete the node itself
+    private int poll(int node, int depth) {
+        int card = arena.dequeue(node);
+        if (arena.count(node) == 0) {
+            removeNode(node, depth);
+        } else {
+            addCards(node, depth, -1);
         }
-        return rebalance(node);
+        return card;
     }
 
-    private HealthNode deleteNodeCompletely(HealthNode node, int nodeHp) {
-        if (node == null)
-            return null;
-    
-        if (nodeHp < node.nodeHp) {
-            node.left = deleteNodeCompletely(node.left, nodeHp);
-        } else if (nodeHp > node.nodeHp) {
-            node.right = deleteNodeCompletely(node.right, nodeHp);
+    // Unlink the node at the given depth, the path above it must be filled
+    private void removeNode(int node, int depth) {
+        HealthArena a = arena;
+        if (a.left[node] == NIL || a.right[node] == NIL) {
+            link(depth, a.left[node] != NIL ? a.left[node] : a.right[node]);
+            rebalancePath(depth - 1);
+            a.free(node);
+            return;
+        }
+
+        // Find the smallest of right, get it here
+        int[] path = a.path;
+        boolean[] left = a.pathLeft;
+        path[depth] = node;
+        left[depth] = false;
+        int i = depth + 1;
+        int minNode = a.right[node];
+        while (a.left[minNode] != NIL) {
+            path[i] = minNode;
+            left[i] = true;
+            i++;
+            minNode = a.left[minNode];
+        }
+        a.value[node] = a.value[minNode];
+        a.card[node] = a.card[minNode];
+        a.queue[node] = a.queue[minNode];
+        link(i, a.right[minNode]);
+        rebalancePath(i - 1);
+        // The successor's slot leaves the tree
+        a.free(minNode);
+    }
+
+    // Put child under the node at depth - 1 of the path, the root if depth is 0
+    private void link(int depth, int child) {
+        if (depth == 0) {
+            root = child;
+        } else if (arena.pathLeft[depth - 1]) {
+            arena.left[arena.path[depth - 1]] = child;
         } else {
-            if (node.left == null)
-                return node.right;
-            else if (node.right == null)
-                return node.left;
-    
-            HealthNode minNode = minValueNode(node.right);
-            node.nodeHp = minNode.nodeHp;
-            node.cards = minNode.cards;
-            node.right = deleteNodeCompletely(node.right, minNode.nodeHp);
-        }
-    
-        node.height = Math.max(height(node.left), height(node.right)) + 1;
-        updateHpStats(node);
-    
-        return node;
+            arena.right[arena.path[depth - 1]] = child;
+        }
+    }
+
+    // Rebalance the path from the given depth up to the root
+    private void rebalancePath(int depth) {
+        for (int i = depth; i >= 0; i--) {
+            link(i, rebalance(arena.path[i]));
+        }
     }
-    
+
     // Updating stats and rebalancing the tree to satify AVL tree condition
-    private HealthNode rebalance(HealthNode node) {
-        if (node == null)
-            return null;
-        
+    private int rebalance(int node) {
+        if (node == NIL)
+            return NIL;
+
         // Update the height and necessary stats
-        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        updateHeight(node);
         updateHpStats(node);
-    
+
         int balance = getBalance(node);
-    
-        if (balance > 1 && getBalance(node.left) >= 0)
+        HealthArena a = arena;
+
+        if (balance > 1 && getBalance(a.left[node]) >= 0)
             return rotateRight(node);
-    
-        if (balance > 1 && getBalance(node.left) < 0) {
-            node.left = rotateLeft(node.left);
+
+        if (balance > 1 && getBalance(a.left[node]) < 0) {
+            a.left[node] = rotateLeft(a.left[node]);
             return rotateRight(node);
         }
 
-        if (balance < -1 && getBalance(node.right) <= 0)
+        if (balance < -1 && getBalance(a.right[node]) <= 0)
             return rotateLeft(node);
-  
-        if (balance < -1 && getBalance(node.right) > 0) {
-            node.right = rotateRight(node.right);
+
+        if (balance < -1 && getBalance(a.right[node]) > 0) {
+            a.right[node] = rotateRight(a.right[node]);
             return rotateLeft(node);
         }
-    
-        return node;
-    }
 
-    public Card getMinHpSurviving(int att){
-        return getMinHpSurviving(root, att);
+        return node;
     }
 
     // Return the minimum hp that will survive the attack
-    private Card getMinHpSurviving(HealthNode node, int att) {
-        Card candidate = null;
-        while (node != null) {
-            if (node.nodeHp > att) {
-                candidate = node.cards.peek();
-                node = node.left;
+    public int getMinHpSurviving(int att) {
+        HealthArena a = arena;
+        int candidate = CardStore.NONE;
+        int node = root;
+        while (node != NIL) {
+            if (a.value[node] > att) {
+                candidate = a.peek(node);
+                node = a.left[node];
             } else {
-                node = node.right;
+                node = a.right[node];
             }
         }
         return candidate;
     }
 
-    public Card getMinHp(){
-        return getMinHp(root);
+    // Same as getMinHpSurviving, and the card is taken out of the tree in the same walk
+    public int pollMinHpSurviving(int att) {
+        HealthArena a = arena;
+        int[] path = a.path;
+        boolean[] left = a.pathLeft;
+        int depth = 0;
+        int found = -1;
+        int node = root;
+        while (node != NIL) {
+            path[depth] = node;
+            left[depth] = a.value[node] > att;
+            if (left[depth]) {
+                found = depth;
+                node = a.left[node];
+            } else {
+                node = a.right[node];
+            }
+            depth++;
+        }
+        if (found < 0) {
+            return CardStore.NONE;
+        }
+        decreaseSize();
+        return poll(path[found], found);
     }
 
-    // Return the card with minimum hp
-    private Card getMinHp(HealthNode node) {
-        if (node == null) {
-            return null;
+    // Same as getMinHp, and the card is taken out of the tree in the same walk
+    public int pollMinHp() {
+        HealthArena a = arena;
+        int node = root;
+        if (node == NIL) {
+            return CardStore.NONE;
+        }
+        int depth = 0;
+        while (a.left[node] != NIL) {
+            a.path[depth] = node;
+            a.pathLeft[depth] = true;
+            depth++;
+            node = a.left[node];
+        }
+        decreaseSize();
+        return poll(node, depth);
+    }
+
+    // The fire phase in one walk: takes out the cards that getMaxHpSmaller and delete would pick one by one,
+    // lowering heal by the value of every card taken, until heal is used up or no card fits anymore.
+    // The values are visited from the largest down and the subtrees whose minimum does not fit are skipped,
+    // a value takes as many cards of its queue as fit, first come first served.
+    // Returns the number of cards taken, they are the first ones of polled() in the order they were picked.
+    // Only for trees without negative values, taking one of those would give heal back.
+    public int pollFitting(int heal) {
+        HealthArena a = arena;
+        if (a.polled == null) {
+            newPolled();
+        }
+        int[] stack = a.path;
+        int top = 0;
+        int count = 0;
+        int emptiedCount = 0;
+        int walkedCount = 0;
+        int node = root;
+        while (heal > 0) {
+            while (node != NIL && a.minHp[node] <= heal) {
+                if (walkedCount == a.walked.length) {
+                    int[] grown = new int[2 * walkedCount];
+                    System.arraycopy(a.walked, 0, grown, 0, walkedCount);
+                    a.walked = grown;
+                }
+                a.walked[walkedCount++] = node;
+                stack[top++] = node;
+                node = a.right[node];
+            }
+            if (top == 0) {
+                break;
+            }
+            node = stack[--top];
+            int nodeHp = a.value[node];
+            if (nodeHp <= heal) {
+                int take = a.count(node);
+                if (nodeHp > 0) {
+                    take = Math.min(take, heal / nodeHp);
+                }
+                if (count + take > a.polled.length) {
+                    grow(count + take);
+                }
+                for (int i = 0; i < take; i++) {
+                    a.polled[count++] = a.dequeue(node);
+                }
+                heal -= take * nodeHp;
+                if (a.count(node) == 0) {
+                    a.emptied[emptiedCount++] = nodeHp;
+                }
+            }
+            node = a.left[node];
+        }
+        size -= count;
+
+        // Every node above a card taken was walked, and after its parent: recounting them backwards
+        // counts the children first
+        for (int i = walkedCount - 1; i >= 0; i--) {
+            recount(a.walked[i]);
+        }
+
+        // The walk only dequeued, the nodes it emptied are unlinked now
+        for (int i = 0; i < emptiedCount; i++) {
+            removeValue(a.emptied[i]);
+        }
+        return count;
+    }
+
+    // The other fire phase: takes out as many cards as heal can fully cover, the smallest values first and first come
+    // first served within a value. How many fit is found with one walk down the sums of the subtrees:
+    // a left subtree that fits is taken whole, then its node's cards as far as they fit, and the first node that
+    // does not fit whole is where the cards taken end. The tree is split there, the smaller side is polled whole,
+    // the node loses the cards that fit and is joined back with the larger side.
+    // Returns the number of cards taken, they are the first ones of polled() in the order they were picked.
+    // Only for trees without negative values, like pollFitting.
+    public int pollSmallest(int heal) {
+        HealthArena a = arena;
+        long budget = heal;
+        int count = 0;
+        int node = root;
+        while (node != NIL) {
+            long leftSum = a.sum[a.left[node]];
+            if (leftSum > budget) {
+                node = a.left[node];
+                continue;
+            }
+            budget -= leftSum;
+            count += a.total[a.left[node]];
+            long nodeSum = (long) a.value[node] * a.count(node);
+            if (nodeSum > budget) {
+                // The value is positive, a node of zeros always fits
+                break;
+            }
+            budget -= nodeSum;
+            count += a.count(node);
+            node = a.right[node];
+        }
+        // The cards of node that fit
+        int take = node == NIL ? 0 : (int) Math.min(a.count(node), budget / a.value[node]);
+        if (count + take == 0) {
+            return 0;
+        }
+        if (a.polled == null) {
+            newPolled();
+        }
+        if (count + take > a.polled.length) {
+            grow(count + take);
+        }
+        if (node == NIL) {
+            // Everything fits
+            pollAll(root, 0);
+            root = NIL;
+            size = 0;
+            return count;
+        }
+        split(root, a.value[node]);
+        int smaller = splitLeft;
+        int larger = splitRight;
+        int taken = pollAll(smaller, 0);
+        for (int i = 0; i < take; i++) {
+            a.polled[taken++] = a.dequeue(node);
+        }
+        root = join(NIL, node, larger);
+        size -= taken;
+        return taken;
+    }
+
+    // Take out every card with a value over bound, in value order and first come first served within a value:
+    // the tree is split at bound, the side above it is polled whole and the rest is joined back.
+    // Returns the number of cards taken, they are the first ones of polled().
+    public int pollAbove(int bound) {
+        HealthArena a = arena;
+        if (root == NIL || a.maxHp[root] <= bound) {
+            return 0;
+        }
+        split(root, bound);
+        int below = splitLeft;
+        int mid = splitMid;
+        int above = splitRight;
+        int count = a.total[above];
+        if (a.polled == null) {
+            newPolled();
         }
-        while(node.left != null){
-            node = node.left;
+        if (count > a.polled.length) {
+            grow(count);
         }
-        return node.cards.peek();
+        pollAll(above, 0);
+        root = mid != NIL ? join(below, mid, NIL) : below;
+        size -= count;
+        return count;
     }
 
-    public Card getMaxHpSmaller(int hp){
-        return getMaxHpSmaller(root, hp);
-    }   
+    // Poll every card of the subtree into polled() from index from, in value order, and free its slots.
+    // Returns the index after the last card.
+    private int pollAll(int node, int from) {
+        HealthArena a = arena;
+        int[] stack = a.path;
+        int top = 0;
+        while (node != NIL || top > 0) {
+            while (node != NIL) {
+                stack[top++] = node;
+                node = a.left[node];
+            }
+            node = stack[--top];
+            int count = a.count(node);
+            for (int i = 0; i < count; i++) {
+                a.polled[from++] = a.dequeue(node);
+            }
+            // The free list goes through right[]
+            int next = a.right[node];
+            a.free(node);
+            node = next;
+        }
+        return from;
+    }
 
-    // Getting the maximum hp smaller than the heal, checking right-node-left order, since we want maximum
-    private Card getMaxHpSmaller(HealthNode node, int heal) {
-        // Base condition
-        if (node == null || node.minHp > heal){
-            return null;
+    // Split the subtree of node into the values below key and the ones above it. The node of key itself is
+    // left out of both, in splitMid. Every level joins what it cuts off, O(log n) in total.
+    void split(int node, int key) {
+        HealthArena a = arena;
+        if (node == NIL) {
+            splitLeft = NIL;
+            splitRight = NIL;
+            splitMid = NIL;
+            return;
+        }
+        int left = a.left[node];
+        int right = a.right[node];
+        if (key < a.value[node]) {
+            split(left, key);
+            splitRight = join(splitRight, node, right);
+        } else if (key > a.value[node]) {
+            split(right, key);
+            splitLeft = join(left, node, splitLeft);
+        } else {
+            splitLeft = left;
+            splitRight = right;
+            splitMid = node;
         }
+    }
 
-        Card rightResult = getMaxHpSmaller(node.right, heal);
-        if (rightResult != null) {
-            return rightResult;
+    // The tree of the subtrees left and right and the node mid between them: every value of left is below mid's
+    // and every value of right above it. mid goes down the side of the higher subtree to where the heights meet,
+    // and the way back up rebalances, so it is O(difference of the heights).
+    int join(int left, int mid, int right) {
+        HealthArena a = arena;
+        if (a.height[left] > a.height[right] + 1) {
+            int joined = join(a.right[left], mid, right);
+            a.right[left] = joined;
+            return rebalance(left);
+        }
+        if (a.height[right] > a.height[left] + 1) {
+            int joined = join(left, mid, a.left[right]);
+            a.left[right] = joined;
+            return rebalance(right);
         }
+        a.left[mid] = left;
+        a.right[mid] = right;
+        updateHeight(mid);
+        updateHpStats(mid);
+        return mid;
+    }
+
+    public int[] polled() {
+        return arena.polled;
+    }
+
+    private void newPolled() {
+        HealthArena a = arena;
+        a.polled = new int[16];
+        a.emptied = new int[16];
+        a.walked = new int[16];
+    }
 
-        if (node.nodeHp <= heal){
-            Card currentResult = node.cards.peek();
-            if (currentResult != null) {
-                return currentResult;
+    private void grow(int capacity) {
+        HealthArena a = arena;
+        int length = Math.max(capacity, 2 * a.polled.length);
+        int[] cards = new int[length];
+        System.arraycopy(a.polled, 0, cards, 0, a.polled.length);
+        a.polled = cards;
+        int[] values = new int[length];
+        System.arraycopy(a.emptied, 0, values, 0, a.emptied.length);
+        a.emptied = values;
+    }
+
+    // Unlink the node of the value, its queue must already be empty
+    private void removeValue(int value) {
+        HealthArena a = arena;
+        int[] path = a.path;
+        boolean[] left = a.pathLeft;
+        int depth = 0;
+        int node = root;
+        while (node != NIL && a.value[node] != value) {
+            path[depth] = node;
+            left[depth] = value < a.value[node];
+            node = left[depth] ? a.left[node] : a.right[node];
+            depth++;
+        }
+        if (node != NIL) {
+            removeNode(node, depth);
+        }
+    }
+
+    // Return the card with minimum hp
+    public int getMinHp() {
+        if (root == NIL) {
+            return CardStore.NONE;
+        }
+        return arena.peek(minValueNode(root));
+    }
+
+    // Getting the maximum hp smaller than the heal: go right while the node fits, since we want maximum
+    public int getMaxHpSmaller(int heal) {
+        HealthArena a = arena;
+        int candidate = CardStore.NONE;
+        int node = root;
+        while (node != NIL) {
+            if (a.value[node] <= heal) {
+                candidate = a.peek(node);
+                node = a.right[node];
+            } else {
+                node = a.left[node];
             }
         }
+        return candidate;
+    }
 
-        Card leftResult = getMaxHpSmaller(node.left, heal);
-        return leftResult;
+    // The card at place k, from 0, with the cards ordered by value from the largest down and first come first
+    // within a value, NONE if the tree has k cards or less
+    public int kthLargest(int k) {
+        HealthArena a = arena;
+        int node = root;
+        while (node != NIL) {
+            int right = a.total[a.right[node]];
+            if (k < right) {
+                node = a.right[node];
+                continue;
+            }
+            k -= right;
+            int count = a.count(node);
+            if (k < count) {
+                return a.cardAt(node, k);
+            }
+            k -= count;
+            node = a.left[node];
+        }
+        return CardStore.NONE;
     }
-    
+
 }
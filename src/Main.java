@@ -52,239 +52,421 @@
 import java.io.*;
 
 public class Main {
-    // Initializing the deck and discard pile 
-    static AttackTree deck = new AttackTree();
-    static HealthTree discardPile = new HealthTree(true);
-    static int survivorPoint = 0;
-    static int strangerPoint = 0;
+    // Fixed parts of the result messages, the cards' names and the numbers are written between them
+    static final byte[] ADDED = OutputWriter.fragment("Added ");
+    static final byte[] TO_THE_DECK = OutputWriter.fragment(" to the deck");
+    static final byte[] THE = OutputWriter.fragment("The ");
+    static final byte[] SURVIVOR = OutputWriter.fragment("Survivor");
+    static final byte[] STRANGER = OutputWriter.fragment("Stranger");
+    static final byte[] SCORE = OutputWriter.fragment(", Score: ");
+    static final byte[] DECK_COUNT = OutputWriter.fragment("Number of cards in the deck: ");
+    static final byte[] DISCARD_PILE_COUNT = OutputWriter.fragment("Number of cards in the discard pile: ");
+    static final byte[] NO_CARD_TO_PLAY = OutputWriter.fragment("No card to play, ");
+    static final byte[] FOUND_WITH_PRIORITY = OutputWriter.fragment("Found with priority ");
+    static final byte[] SURVIVOR_PLAYS = OutputWriter.fragment(", Survivor plays ");
+    static final byte[] THE_PLAYED_CARD = OutputWriter.fragment(", the played card ");
+    static final byte[] RETURNED_TO_DECK = OutputWriter.fragment("returned to deck");
+    static final byte[] IS_DISCARDED = OutputWriter.fragment("is discarded");
+    static final byte[] COMMA = OutputWriter.fragment(", ");
+    static final byte[] CARDS_REVIVED = OutputWriter.fragment(" cards revived");
+    static final byte[] NO_CARD_TO_STEAL = OutputWriter.fragment("No card to steal");
+    static final byte[] STRANGER_STOLE = OutputWriter.fragment("The Stranger stole the card: ");
+    static final byte[] CARDS_WITH_ATTACK = OutputWriter.fragment("Number of cards with attack at least ");
+    static final byte[] AND_HEALTH_ABOVE = OutputWriter.fragment(" and health above ");
+    static final byte[] COLON = OutputWriter.fragment(": ");
+    static final byte[] STRONGEST_CARD = OutputWriter.fragment("Strongest card number ");
+    static final byte[] NO_CARD_NUMBER = OutputWriter.fragment("No card number ");
+    static final byte[] IN_THE_DECK = OutputWriter.fragment(" in the deck");
+    static final byte[] STRANGER_STOLE_ALL = OutputWriter.fragment("The Stranger stole ");
+    static final byte[] CARDS_COLON = OutputWriter.fragment(" cards: ");
 
     public static void main(String[] args) {
+        // Batch mode, every file of a folder is played at the same time
+        if (args.length == 3 && args[0].equals("--batch")) {
+            BatchRunner.run(args[1], args[2]);
+            Metrics.dump();
+            return;
+        }
+
+        // Candidate policies against each other on every file of a folder
+        if (args.length == 3 && args[0].equals("--tournament")) {
+            TournamentRunner.run(args[1], args[2]);
+            Metrics.dump();
+            return;
+        }
+
+        // Text encounter file to its binary form
+        if (args.length == 3 && args[0].equals("--convert")) {
+            convert(args[1], args[2]);
+            return;
+        }
+
+        // Options of a single game, before its two files: a binary encounter file,
+        // a snapshot to start from and one to save the game into at the end
+        boolean binary = false;
+        String resume = null;
+        String save = null;
+        int first = 0;
+        while (first < args.length - 2) {
+            if (args[first].equals("--replay")) {
+                binary = true;
+                first++;
+            } else if (args[first].equals("--resume")) {
+                resume = args[first + 1];
+                first += 2;
+            } else if (args[first].equals("--save")) {
+                save = args[first + 1];
+                first += 2;
+            } else {
+                break;
+            }
+        }
+
         // Check command line arguments
-        if (args.length != 2) {
-            System.out.println("Usage: java Main <input_file> <output_file>");
+        if (args.length - first != 2) {
+            System.out.println("Usage: java Main [--resume <snapshot>] [--save <snapshot>] <input_file> <output_file>");
+            System.out.println("       java Main --batch <input_dir> <output_dir>");
+            System.out.println("       java Main --tournament <policy,policy,...> <input_dir>");
+            System.out.println("       java Main --convert <input_file> <binary_file>");
+            System.out.println("       java Main --replay <binary_file> <output_file>");
             System.out.println("Example: java Main ../testcase_inputs/test.txt ../output/test.txt");
             return;
         }
 
-        String inFile = args[0];
-        String outFile = args[1];
+        GameSession session;
+        if (resume == null) {
+            session = new GameSession();
+        } else {
+            try {
+                session = Snapshot.read(resume);
+            } catch (IOException e) {
+                System.out.println("Snapshot could not be read: " + resume + ": " + e.getMessage());
+                return;
+            }
+        }
+        boolean finished = runFile(session, args[first], args[first + 1], null, binary);
+        if (save != null) {
+            try {
+                Snapshot.write(session, save);
+            } catch (IOException e) {
+                System.out.println("Snapshot could not be written: " + save + ": " + e.getMessage());
+            }
+        }
+        if (finished) {
+            System.out.println("end");
+        }
+        Metrics.dump();
+    }
+
+    private static void convert(String textFile, String binaryFile) {
+        try {
+            long commands = EncounterLog.convert(textFile, binaryFile);
+            System.out.println(commands + " commands written to " + binaryFile);
+        } catch (FileNotFoundException e) {
+            System.out.println("Input file not found: " + textFile);
+        } catch (Exception e) {
+            System.out.println("Error converting commands: " + e.getMessage());
+            new File(binaryFile).delete();
+        }
+    }
 
-        // Initialize file reader and writer - Used Buffered, since it is a much faster alternative for Scanner
-        try (BufferedReader br = new BufferedReader(new FileReader(inFile));
-             BufferedWriter bw = new BufferedWriter(new FileWriter(outFile))) {
+    // Play one encounter file as a new game, returns false if it stopped at an invalid command
+    public static boolean runFile(String inFile, String outFile) {
+        return runFile(inFile, outFile, null);
+    }
 
-            String line = br.readLine();
-            while (line != null) {
-                if (line.trim().isEmpty()) 
-                {
-                    line = br.readLine();
-                    continue;
-                }
-                String[] parts = line.trim().split("\\s+");
-                String command = parts[0];
-                String out = "";
+    // Same, and time every command into stats if it is not null
+    public static boolean runFile(String inFile, String outFile, RunStats stats) {
+        return runFile(inFile, outFile, stats, false);
+    }
+
+    // Same, binary tells that the file is an EncounterLog
+    public static boolean runFile(String inFile, String outFile, RunStats stats, boolean binary) {
+        return runFile(new GameSession(), inFile, outFile, stats, binary);
+    }
 
+    // Same, on a game that may already be under way
+    public static boolean runFile(GameSession session, String inFile, String outFile, RunStats stats, boolean binary) {
+        // Initialize file reader and writer - Both work on reusable byte buffers, so no String is made per line
+        try (CommandSource reader = binary ? new BinaryCommandReader(inFile) : new CommandReader(new FileInputStream(inFile));
+             OutputWriter out = new OutputWriter(new FileOutputStream(outFile).getChannel())) {
+
+            // -Dnightpass.pipeline=true parses and formats on two more threads
+            if (Pipeline.ENABLED) {
+                return Pipeline.run(session, reader, out, stats);
+            }
+            return run(session, reader, out, stats);
+
+        } catch (FileNotFoundException e) {
+            System.out.println("Input file not found: " + inFile);
+            e.printStackTrace();
+        } catch (IOException e) {
+            System.out.println("I/O error occurred.");
+            e.printStackTrace();
+        } catch (Exception e) {
+            System.out.println("Error processing commands: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            // The game is over, its numbers go to the total
+            if (session.metrics != null) {
+                session.metrics.close();
+            }
+        }
+        return true;
+    }
+
+    // Run every command of the reader on the session, returns false if it stopped at an invalid command
+    public static boolean run(GameSession session, CommandSource reader, OutputWriter out) throws IOException {
+        return run(session, reader, out, null);
+    }
+
+    public static boolean run(GameSession session, CommandSource reader, OutputWriter out, RunStats stats) throws IOException {
+        return run(session, reader, out, stats, true);
+    }
+
+    // Same, an invalid command is only printed when report is set, reader.invalidCommand() still tells which it was
+    public static boolean run(GameSession session, CommandSource reader, OutputWriter out, RunStats stats,
+                              boolean report) throws IOException {
+        Metrics metrics = session.metrics;
+        boolean timed = stats != null || metrics != null;
+        // The draws up to the first other command go into the deck together, that command pays for the load
+        boolean opening = GameSession.LOAD_OPENING;
+        try {
+            int command = reader.next();
+            while (command != CommandReader.EOF) {
+                long start = timed ? System.nanoTime() : 0;
+                if (opening && command != CommandReader.DRAW_CARD) {
+                    session.loadOpening();
+                    opening = false;
+                }
+                int type;
                 switch (command) {
-                    case "draw_card": {
-                        String name = parts[1];
-                        int att = Integer.parseInt(parts[2]);
-                        int hp = Integer.parseInt(parts[3]);
-                        out = draw_card(name, att, hp);
+                    case CommandReader.DRAW_CARD: {
+                        if (opening) {
+                            session.drawOpening(reader.name, reader.att, reader.hp);
+                            writeAdded(out, reader.name);
+                        } else {
+                            draw_card(session, reader.name, reader.att, reader.hp, out);
+                        }
+                        type = Metrics.DRAW_CARD;
+                        break;
+                    }
+                    case CommandReader.BATTLE: {
+                        battle(session, reader.att, reader.hp, reader.heal, out);
+                        type = Metrics.BATTLE + session.lastPriority;
+                        break;
+                    }
+                    case CommandReader.FIND_WINNING: {
+                        findWinning(session, out);
+                        type = Metrics.FIND_WINNING;
                         break;
                     }
-                    case "battle": {
-                        int att = Integer.parseInt(parts[1]);
-                        int hp = Integer.parseInt(parts[2]);
-                        int heal = Integer.parseInt(parts[3]);
-                        out = battle(att, hp, heal);
+                    case CommandReader.DECK_COUNT: {
+                        deckCount(session, out);
+                        type = Metrics.DECK_COUNT;
                         break;
                     }
-                    case "find_winning": {
-                        out = findWinning();
+                    case CommandReader.DISCARD_PILE_COUNT: {
+                        discardPileCount(session, out);
+                        type = Metrics.DISCARD_PILE_COUNT;
                         break;
                     }
-                    case "deck_count": {
-                        out = deckCount();
+                    case CommandReader.STEAL_CARD: {
+                        steal_card(session, reader.att, reader.hp, out);
+                        type = Metrics.STEAL_CARD;
                         break;
                     }
-                    case "discard_pile_count": {
-                        out = discardPileCount();
+                    case CommandReader.COUNT_CARDS: {
+                        countCards(session, reader.att, reader.hp, out);
+                        type = Metrics.COUNT_CARDS;
                         break;
                     }
-                    case "steal_card": {
-                        int att = Integer.parseInt(parts[1]);
-                        int hp = Integer.parseInt(parts[2]);
-                        out = steal_card(att, hp);
+                    case CommandReader.KTH_CARD: {
+                        kthCard(session, reader.att, out);
+                        type = Metrics.KTH_CARD;
+                        break;
+                    }
+                    case CommandReader.STEAL_ALL: {
+                        steal_all(session, reader.att, reader.hp, out);
+                        type = Metrics.STEAL_ALL;
                         break;
                     }
                     default: {
-                        System.out.println("Invalid command: " + command);
-                        return;
+                        if (report) {
+                            System.out.println("Invalid command: " + reader.invalidCommand());
+                        }
+                        return false;
                     }
                 }
 
-                bw.write(out);
-                bw.newLine();
-                line = br.readLine();
+                out.newLine();
+                if (timed) {
+                    long nanos = System.nanoTime() - start;
+                    if (stats != null) {
+                        stats.record(nanos);
+                    }
+                    if (metrics != null) {
+                        metrics.command(type, nanos);
+                    }
+                }
+                command = reader.next();
             }
-
-        } catch (FileNotFoundException e) {
-            System.out.println("Input file not found: " + inFile);
-            e.printStackTrace();
-        } catch (IOException e) {
-            System.out.println("I/O error occurred.");
-            e.printStackTrace();
-        } catch (Exception e) {
-            System.out.println("Error processing commands: " + e.getMessage());
-            e.printStackTrace();
+        } finally {
+            // However the file ends, even on a line that cannot be read, the opening goes into the deck,
+            // so a game saved after it has its cards
+            session.loadOpening();
         }
-
-        System.out.println("end");
+        return true;
     }
 
     // Creating cards, and adding them to the deck
-    public static String draw_card(String name, int att, int hp) {
-        Card card = new Card(name, att, hp);
-        deck.insert(card);
-        return String.format("Added %s to the deck", name);
+    public static void draw_card(GameSession session, String name, int att, int hp, OutputWriter out) throws IOException {
+        session.drawCard(name, att, hp);
+        writeAdded(out, name);
     }
 
     // Get the winner by points
-    public static String findWinning() {
-        String winner = "Stranger";
-        if (survivorPoint >= strangerPoint) {
-            winner = "Survivor";
-        }
-        return String.format("The %s, Score: %d", winner, Math.max(strangerPoint, survivorPoint));
+    public static void findWinning(GameSession session, OutputWriter out) throws IOException {
+        writeWinner(out, session.survivorWins(), session.winningScore());
     }
 
     // Return the size of the deck
-    public static String deckCount() {
-        return String.format("Number of cards in the deck: %d", deck.size());
+    public static void deckCount(GameSession session, OutputWriter out) throws IOException {
+        writeDeckCount(out, session.deckCount());
     }
 
     // Return the size of the discard pile
-    public static String discardPileCount() {
-        return String.format("Number of cards in the discard pile: %d", discardPile.size());
+    public static void discardPileCount(GameSession session, OutputWriter out) throws IOException {
+        writeDiscardPileCount(out, session.discardPileCount());
     }
 
-    // Battle and Heal phase
-    public static String battle(int att, int hp, int heal) {
-        Card suitable = null;
-        int priority;
-
-        // Checking for priorities to find a suitable card - if found, do not search others
-        suitable = deck.firstPriority(att, hp); // Surive and kill
-        priority = 1;
-        if (suitable == null){
-            suitable = deck.secondPriority(att, hp); // Survive and don't kill
-            priority = 2;
-            if (suitable == null){
-                suitable = deck.thirdPriority(att, hp); // Kill and don't survive
-                priority = 3;
-                if(suitable == null){
-                    suitable = deck.fourthPriority(att, hp); // Don't kill and don't survive
-                    priority = 4;
-                }
+    // Stealing every suitable card
+    public static void steal_all(GameSession session, int attackLimit, int healthLimit, OutputWriter out) throws IOException {
+        int count = session.stealAll(attackLimit, healthLimit);
+        writeStolenAll(out, count, stolenNames(session, count));
+    }
+
+    // The names of the cards the last stealAll took, separated by commas
+    static String stolenNames(GameSession session, int count) {
+        int[] stolen = session.deck.stolen();
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                names.append(", ");
             }
+            names.append(session.cards.name(stolen[i]));
         }
+        return names.toString();
+    }
 
-        if (suitable == null){
-            priority = 0;
-        }
+    // Number of cards in the deck with at least att attack and more than hp health
+    public static void countCards(GameSession session, int att, int hp, OutputWriter out) throws IOException {
+        writeCount(out, att, hp, session.countCards(att, hp));
+    }
 
-        // Update points based on priority
-        switch (priority) {
-            // Stranger automatically kills you(+2)
-            case 0:
-                strangerPoint += 2;
-                break;
-            // Survivor kills(+2), Stranger just damages(+1)
-            case 1:
-                strangerPoint += 1;
-                survivorPoint += 2;
-                break;
+    // The k-th strongest card of the deck
+    public static void kthCard(GameSession session, int k, OutputWriter out) throws IOException {
+        int card = session.kthCard(k);
+        writeKth(out, k, card == CardStore.NONE ? null : session.cards.name(card));
+    }
 
-            case 2:
-            // Survivor just damages(+1), Stranger just damages(+1)
-                strangerPoint += 1;
-                survivorPoint += 1;
-                break;
-            // Survivor kills(+2), Stranger kills(+2)
-            case 3:
-                strangerPoint += 2;
-                survivorPoint += 2;
-                break;
-            // Survivor just damages(+1), Stranger kills(+2)
-            case 4:
-                strangerPoint += 2;
-                survivorPoint += 1;
-                break;
-        }
+    // Battle and Heal phase
+    public static void battle(GameSession session, int att, int hp, int heal, OutputWriter out) throws IOException {
+        int priority = session.battle(att, hp, heal);
+        String played = priority == 0 ? null : session.cards.name(session.lastPlayed);
+        writeBattle(out, priority, played, session.lastReturned, session.lastRevived);
+    }
 
-        String text = "is discarded";
-        // If there is any suitable card, take damage
-        if (suitable != null) {
-            suitable.takeDamage(att);
-            // If the card survives
-            if (suitable.curHp > 0) {
-                suitable.changeAtt();
-                text = "returned to deck";
-                deck.insert(suitable);
-            } 
-            // If the card gets killed
-            else {
-                discardPile.insert(suitable);
-            }
-        }
-        
-        // Healing phase
-        int reviveCounter = 0;
-        Card revive;
-        // Continue until there are no more heal(if there are suitable cards)
-        while (heal > 0) {
-            if (discardPile.size() == 0) 
-            {
-                break;
-            }
-            // Find the cards that can be healed fully
-            revive = discardPile.getMaxHpSmaller(heal);
-            if (revive == null) {
-                // If not, try to find the minHp possible, and partially revive it
-                revive = discardPile.getMinHp();
-                if (revive != null) {
-                    discardPile.delete(revive);
-                    revive.partialRevive(heal);
-                    discardPile.insert(revive);
-                    break;
-                }
-            }
-            // If it is fully healable, heal it, and add it to the deck
-            else {
-                discardPile.delete(revive);
-                heal -= revive.missingHp;
-                revive.fullyRevive();
-                reviveCounter++;
-                deck.insert(revive);
-            }
+    // Stealing the suitable card
+    public static void steal_card(GameSession session, int attackLimit, int healthLimit, OutputWriter out) throws IOException {
+        int stolenCard = session.stealCard(attackLimit, healthLimit);
+        writeStolen(out, stolenCard == CardStore.NONE ? null : session.cards.name(stolenCard));
+    }
+
+    // The result lines, from the values a command returned: the Pipeline's writer thread formats them too
+
+    static void writeAdded(OutputWriter out, String name) throws IOException {
+        out.write(ADDED);
+        out.write(name);
+        out.write(TO_THE_DECK);
+    }
+
+    static void writeWinner(OutputWriter out, boolean survivorWins, int score) throws IOException {
+        out.write(THE);
+        out.write(survivorWins ? SURVIVOR : STRANGER);
+        out.write(SCORE);
+        out.write(score);
+    }
+
+    static void writeDeckCount(OutputWriter out, int count) throws IOException {
+        out.write(DECK_COUNT);
+        out.write(count);
+    }
+
+    static void writeDiscardPileCount(OutputWriter out, int count) throws IOException {
+        out.write(DISCARD_PILE_COUNT);
+        out.write(count);
+    }
+
+    static void writeStolenAll(OutputWriter out, int count, String names) throws IOException {
+        if (count == 0) {
+            out.write(NO_CARD_TO_STEAL);
+            return;
         }
+        out.write(STRANGER_STOLE_ALL);
+        out.write(count);
+        out.write(CARDS_COLON);
+        out.write(names);
+    }
+
+    static void writeCount(OutputWriter out, int att, int hp, int count) throws IOException {
+        out.write(CARDS_WITH_ATTACK);
+        out.write(att);
+        out.write(AND_HEALTH_ABOVE);
+        out.write(hp);
+        out.write(COLON);
+        out.write(count);
+    }
 
-        if (suitable == null) {
-            return String.format("No card to play, %d cards revived", reviveCounter);
+    // name is null when the deck has less than k cards
+    static void writeKth(OutputWriter out, int k, String name) throws IOException {
+        if (name == null) {
+            out.write(NO_CARD_NUMBER);
+            out.write(k);
+            out.write(IN_THE_DECK);
+            return;
         }
+        out.write(STRONGEST_CARD);
+        out.write(k);
+        out.write(COLON);
+        out.write(name);
+    }
 
-        return String.format(
-            "Found with priority %d, Survivor plays %s, the played card %s, %d cards revived",
-            priority, suitable.name, text, reviveCounter
-        );
+    // played is null when there was no card to play
+    static void writeBattle(OutputWriter out, int priority, String played, boolean returned, int revived) throws IOException {
+        if (priority == 0) {
+            out.write(NO_CARD_TO_PLAY);
+        }
+        else {
+            out.write(FOUND_WITH_PRIORITY);
+            out.write(priority);
+            out.write(SURVIVOR_PLAYS);
+            out.write(played);
+            out.write(THE_PLAYED_CARD);
+            out.write(returned ? RETURNED_TO_DECK : IS_DISCARDED);
+            out.write(COMMA);
+        }
+        out.write(revived);
+        out.write(CARDS_REVIVED);
     }
 
-    // Stealing the suitable card
-    public static String steal_card(int attackLimit, int healthLimit) {
-        Card stolenCard = deck.stealCard(attackLimit, healthLimit);
-        if (stolenCard == null) {
-            return "No card to steal";
+    // stolen is null when there was no card to steal
+    static void writeStolen(OutputWriter out, String stolen) throws IOException {
+        if (stolen == null) {
+            out.write(NO_CARD_TO_STEAL);
+            return;
         }
-        return String.format("The Stranger stole the card: %s", stolenCard.name);
+        out.write(STRANGER_STOLE);
+        out.write(stolen);
     }
 }
@@ -0,0 +1,243 @@
+import java.io.*;
+
+// Metrics counts what one game did: the latency of every command by type (battles by the priority they ended with),
+// the nodes every priority search of the deck visited, the rotations of the attack and health trees,
+// and the iterations of the fire phase. It is opt-in:
+//   -Dnightpass.metrics=json|prometheus        turns it on and picks the format
+//   -Dnightpass.metrics.file=<path>            where the dumps go, rewritten by every dump (stderr by default)
+//   -Dnightpass.metrics.interval=<seconds>     also dump every that many seconds while the games run
+// Off, a session has no Metrics and the engine only pays a null check per search and rotation.
+// A session's Metrics is only written by the thread playing it; the dumps read the live ones without locking,
+// so an interval dump may be off by the commands running at that moment. A closed Metrics is added to the total.
+public class Metrics {
+    static final String FORMAT = System.getProperty("nightpass.metrics");
+    static final boolean ENABLED = "json".equals(FORMAT) || "prometheus".equals(FORMAT);
+    static final String FILE = System.getProperty("nightpass.metrics.file");
+    static final int INTERVAL = Integer.getInteger("nightpass.metrics.interval", 0);
+
+    // Command types, a battle is BATTLE + its priority
+    static final int DRAW_CARD = 0;
+    static final int BATTLE = 1;
+    static final int STEAL_CARD = 6;
+    static final int FIND_WINNING = 7;
+    static final int DECK_COUNT = 8;
+    static final int DISCARD_PILE_COUNT = 9;
+    static final int COUNT_CARDS = 10;
+    static final int KTH_CARD = 11;
+    static final int STEAL_ALL = 12;
+    static final int COMMANDS = 13;
+
+    // Searches of the deck
+    static final int FIRST_PRIORITY = 0;
+    static final int SECOND_PRIORITY = 1;
+    static final int THIRD_PRIORITY = 2;
+    static final int FOURTH_PRIORITY = 3;
+    static final int STEAL = 4;
+    static final int SEARCHES = 5;
+
+    private static final String[] COMMAND_NAMES = {
+        "draw_card", "battle", "battle", "battle", "battle", "battle",
+        "steal_card", "find_winning", "deck_count", "discard_pile_count", "count_cards", "kth_card",
+        "steal_all"
+    };
+    private static final String[] SEARCH_NAMES = {
+        "first_priority", "second_priority", "third_priority", "fourth_priority", "steal_card"
+    };
+
+    final LatencyHistogram[] latency = new LatencyHistogram[COMMANDS];
+    final long[] searches = new long[SEARCHES];
+    final long[] nodesVisited = new long[SEARCHES];
+    long attackRotations;
+    long healthRotations;
+    long reviveIterations;
+
+    // The Metrics of the running games, and the sum of the closed ones
+    private static Metrics[] live = new Metrics[16];
+    private static int liveCount;
+    private static final Metrics closed = new Metrics();
+    private static Thread reporter;
+
+    public Metrics() {
+        for (int i = 0; i < COMMANDS; i++) {
+            latency[i] = new LatencyHistogram();
+        }
+    }
+
+    // A new Metrics counted in the dumps, null when metrics are off
+    static Metrics open() {
+        if (!ENABLED) {
+            return null;
+        }
+        Metrics metrics = new Metrics();
+        synchronized (Metrics.class) {
+            if (liveCount == live.length) {
+                Metrics[] grown = new Metrics[live.length * 2];
+                System.arraycopy(live, 0, grown, 0, liveCount);
+                live = grown;
+            }
+            live[liveCount++] = metrics;
+            if (INTERVAL > 0 && reporter == null) {
+                startReporter();
+            }
+        }
+        return metrics;
+    }
+
+    // The game is over: its numbers move to the total
+    void close() {
+        synchronized (Metrics.class) {
+            for (int i = 0; i < liveCount; i++) {
+                if (live[i] == this) {
+                    live[i] = live[--liveCount];
+                    live[liveCount] = null;
+                    closed.add(this);
+                    return;
+                }
+            }
+        }
+    }
+
+    void command(int type, long nanos) {
+        latency[type].record(nanos);
+    }
+
+    void search(int search, int nodes) {
+        searches[search]++;
+        nodesVisited[search] += nodes;
+    }
+
+    public void add(Metrics other) {
+        for (int i = 0; i < COMMANDS; i++) {
+            latency[i].add(other.latency[i]);
+        }
+        for (int i = 0; i < SEARCHES; i++) {
+            searches[i] += other.searches[i];
+            nodesVisited[i] += other.nodesVisited[i];
+        }
+        attackRotations += other.attackRotations;
+        healthRotations += other.healthRotations;
+        reviveIterations += other.reviveIterations;
+    }
+
+    // Sum of every game so far, running or closed
+    static Metrics total() {
+        Metrics total = new Metrics();
+        synchronized (Metrics.class) {
+            total.add(closed);
+            for (int i = 0; i < liveCount; i++) {
+                total.add(live[i]);
+            }
+        }
+        return total;
+    }
+
+    // Write the total in the chosen format, does nothing when metrics are off
+    static void dump() {
+        if (!ENABLED) {
+            return;
+        }
+        StringBuilder text = new StringBuilder(4096);
+        if (FORMAT.equals("json")) {
+            total().json(text);
+        } else {
+            total().prometheus(text);
+        }
+        if (FILE == null) {
+            System.err.print(text);
+            System.err.flush();
+            return;
+        }
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(FILE), "UTF-8")) {
+            out.write(text.toString());
+        } catch (IOException e) {
+            System.out.println("Metrics could not be written to " + FILE + ": " + e.getMessage());
+        }
+    }
+
+    private static void startReporter() {
+        reporter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Thread.sleep(INTERVAL * 1000L);
+                        dump();
+                    }
+                } catch (InterruptedException e) {
+                    // The process is done
+                }
+            }
+        }, "metrics-reporter");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    public void json(StringBuilder out) {
+        out.append("{\n  \"commands\": [");
+        for (int i = 0; i < COMMANDS; i++) {
+            LatencyHistogram histogram = latency[i];
+            out.append(i == 0 ? "\n" : ",\n").append("    {\"command\": \"").append(COMMAND_NAMES[i]).append('"');
+            if (isBattle(i)) {
+                out.append(", \"priority\": ").append(i - BATTLE);
+            }
+            out.append(", \"count\": ").append(histogram.count())
+                .append(", \"mean_ns\": ").append(Math.round(histogram.mean()))
+                .append(", \"p50_ns\": ").append(histogram.percentile(50))
+                .append(", \"p99_ns\": ").append(histogram.percentile(99))
+                .append(", \"p999_ns\": ").append(histogram.percentile(99.9))
+                .append(", \"max_ns\": ").append(histogram.max()).append('}');
+        }
+        out.append("\n  ],\n  \"searches\": [");
+        for (int i = 0; i < SEARCHES; i++) {
+            out.append(i == 0 ? "\n" : ",\n").append("    {\"search\": \"").append(SEARCH_NAMES[i])
+                .append("\", \"calls\": ").append(searches[i])
+                .append(", \"nodes_visited\": ").append(nodesVisited[i]).append('}');
+        }
+        out.append("\n  ],\n  \"rotations\": {\"attack_tree\": ").append(attackRotations)
+            .append(", \"health_tree\": ").append(healthRotations).append("},\n")
+            .append("  \"revive_iterations\": ").append(reviveIterations).append("\n}\n");
+    }
+
+    // Prometheus text exposition format, the latencies as summaries in seconds
+    public void prometheus(StringBuilder out) {
+        out.append("# HELP nightpass_command_seconds Time to run a command, battles by the priority they ended with.\n")
+            .append("# TYPE nightpass_command_seconds summary\n");
+        for (int i = 0; i < COMMANDS; i++) {
+            LatencyHistogram histogram = latency[i];
+            String labels = "command=\"" + COMMAND_NAMES[i] + "\"" + (isBattle(i) ? ",priority=\"" + (i - BATTLE) + "\"" : "");
+            quantile(out, labels, "0.5", histogram.percentile(50));
+            quantile(out, labels, "0.99", histogram.percentile(99));
+            quantile(out, labels, "0.999", histogram.percentile(99.9));
+            out.append("nightpass_command_seconds_sum{").append(labels).append("} ")
+                .append(histogram.mean() * histogram.count() / 1e9).append('\n');
+            out.append("nightpass_command_seconds_count{").append(labels).append("} ").append(histogram.count()).append('\n');
+        }
+        out.append("# HELP nightpass_searches_total Priority searches of the deck.\n")
+            .append("# TYPE nightpass_searches_total counter\n");
+        for (int i = 0; i < SEARCHES; i++) {
+            out.append("nightpass_searches_total{search=\"").append(SEARCH_NAMES[i]).append("\"} ").append(searches[i]).append('\n');
+        }
+        out.append("# HELP nightpass_search_nodes_visited_total Attack tree nodes the priority searches visited.\n")
+            .append("# TYPE nightpass_search_nodes_visited_total counter\n");
+        for (int i = 0; i < SEARCHES; i++) {
+            out.append("nightpass_search_nodes_visited_total{search=\"").append(SEARCH_NAMES[i]).append("\"} ")
+                .append(nodesVisited[i]).append('\n');
+        }
+        out.append("# HELP nightpass_rotations_total AVL rotations.\n")
+            .append("# TYPE nightpass_rotations_total counter\n")
+            .append("nightpass_rotations_total{tree=\"attack\"} ").append(attackRotations).append('\n')
+            .append("nightpass_rotations_total{tree=\"health\"} ").append(healthRotations).append('\n')
+            .append("# HELP nightpass_revive_iterations_total Cards the fire phase went through.\n")
+            .append("# TYPE nightpass_revive_iterations_total counter\n")
+            .append("nightpass_revive_iterations_total ").append(reviveIterations).append('\n');
+    }
+
+    private static void quantile(StringBuilder out, String labels, String quantile, long nanos) {
+        out.append("nightpass_command_seconds{").append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+            .append(nanos / 1e9).append('\n');
+    }
+
+    private static boolean isBattle(int type) {
+        return type >= BATTLE && type < STEAL_CARD;
+    }
+}
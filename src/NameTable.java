@@ -0,0 +1,60 @@
+// NameTable interns the card names of one game: every distinct name is stored once and known by an int id.
+// The ids are found through an open addressing hash table of ids, probed linearly, that doubles at 3/4 load.
+public class NameTable {
+    private String[] names = new String[16];
+    private int count;
+    // Slot -> id + 1, 0 for an empty slot
+    private int[] slots = new int[32];
+
+    // Id of the name, added if it is new
+    public int intern(String name) {
+        int mask = slots.length - 1;
+        int slot = mix(name.hashCode()) & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (names[id].equals(name)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (count == names.length) {
+            String[] grown = new String[2 * names.length];
+            System.arraycopy(names, 0, grown, 0, count);
+            names = grown;
+        }
+        int id = count++;
+        names[id] = name;
+        slots[slot] = id + 1;
+        if (4 * count > 3 * slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private void rehash() {
+        int[] grown = new int[2 * slots.length];
+        int mask = grown.length - 1;
+        for (int id = 0; id < count; id++) {
+            int slot = mix(names[id].hashCode()) & mask;
+            while (grown[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            grown[slot] = id + 1;
+        }
+        slots = grown;
+    }
+
+    // Spread the hash bits, "card1", "card2"... differ only in their last characters
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,26 @@
+// NodePool keeps the nodes that left the trees of one game, so the next insertions reuse them instead of allocating.
+// Cards keep moving between the deck and the discard pile, so the same number of nodes is freed and needed again
+// all the time. Every free list is linked through a pointer field the node does not use while it is free.
+// Only the AttackNodes are pooled here, the health nodes are slots of a HealthArena, which reuses them itself.
+// One pool belongs to one GameSession, it is not shared between threads.
+public class NodePool {
+    private AttackNode attackNodes;
+
+    // A free node without cards, or null if there is none
+    public AttackNode attackNode() {
+        AttackNode node = attackNodes;
+        if (node == null) {
+            return null;
+        }
+        attackNodes = node.right;
+        node.right = null;
+        return node;
+    }
+
+    // The node must have no cards left
+    public void free(AttackNode node) {
+        node.left = null;
+        node.right = attackNodes;
+        attackNodes = node;
+    }
+}
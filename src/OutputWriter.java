@@ -0,0 +1,153 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+// OutputWriter collects the result lines as bytes in one reusable buffer and writes them out in large chunks.
+// Messages are written piece by piece: fixed fragments prepared once with fragment(), card names and ints,
+// so nothing has to be formatted into a String first.
+public class OutputWriter implements Closeable {
+    private static final byte[] NEW_LINE = fragment(System.lineSeparator());
+    private static final byte[] MIN_INT = fragment(Integer.toString(Integer.MIN_VALUE));
+
+    private final OutputStream stream;
+    private final WritableByteChannel channel;
+    private final Charset charset;
+    private final byte[] buffer;
+    private final ByteBuffer wrapped;
+    private int count;
+
+    public OutputWriter(OutputStream stream) {
+        this(stream, null, 1 << 16);
+    }
+
+    // Writing through the channel of a FileOutputStream skips one copy of every chunk
+    public OutputWriter(WritableByteChannel channel) {
+        this(null, channel, 1 << 16);
+    }
+
+    private OutputWriter(OutputStream stream, WritableByteChannel channel, int bufferSize) {
+        this.stream = stream;
+        this.channel = channel;
+        // Same encoding as the FileWriter this replaces
+        this.charset = Charset.defaultCharset();
+        this.buffer = new byte[bufferSize];
+        this.wrapped = ByteBuffer.wrap(buffer);
+        this.count = 0;
+    }
+
+    // Fixed message text, only ASCII is expected here
+    public static byte[] fragment(String text) {
+        byte[] result = new byte[text.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) text.charAt(i);
+        }
+        return result;
+    }
+
+    public void write(byte[] fragment) throws IOException {
+        if (fragment.length > buffer.length - count) {
+            flushBuffer();
+            if (fragment.length > buffer.length) {
+                writeOut(fragment, fragment.length);
+                return;
+            }
+        }
+        System.arraycopy(fragment, 0, buffer, count, fragment.length);
+        count += fragment.length;
+    }
+
+    // Card names are copied char by char while they are ASCII, anything else goes through the charset
+    public void write(String text) throws IOException {
+        int length = text.length();
+        if (length > buffer.length - count) {
+            flushBuffer();
+        }
+        if (length <= buffer.length) {
+            int start = count;
+            int i = 0;
+            while (i < length) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    break;
+                }
+                buffer[start + i] = (byte) c;
+                i++;
+            }
+            if (i == length) {
+                count += length;
+                return;
+            }
+        }
+        write(text.getBytes(charset));
+    }
+
+    public void write(int value) throws IOException {
+        if (value == Integer.MIN_VALUE) {
+            write(MIN_INT);
+            return;
+        }
+        // At most 10 digits and a sign
+        if (buffer.length - count < 11) {
+            flushBuffer();
+        }
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int pos = count + digits;
+        do {
+            buffer[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        count += digits;
+    }
+
+    public void newLine() throws IOException {
+        write(NEW_LINE);
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            writeOut(buffer, count);
+            count = 0;
+        }
+    }
+
+    private void writeOut(byte[] bytes, int length) throws IOException {
+        if (channel == null) {
+            stream.write(bytes, 0, length);
+            return;
+        }
+        ByteBuffer chunk = bytes == buffer ? wrapped : ByteBuffer.wrap(bytes);
+        chunk.clear();
+        chunk.limit(length);
+        while (chunk.hasRemaining()) {
+            channel.write(chunk);
+        }
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        if (stream != null) {
+            stream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (channel != null) {
+                channel.close();
+            } else {
+                stream.close();
+            }
+        }
+    }
+}
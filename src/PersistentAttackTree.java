@@ -0,0 +1,227 @@
+// PersistentAttackTree is the immutable AttackTree of a PersistentSession: an AVL tree of attack values, each with
+// the root of an inner PersistentHealthTree of its cards sorted by health, and the same maxHp, maxAtt and minAtt
+// of the subtree as an AttackNode. The searches pick the same cards as AttackTree's (they are the recursive
+// searches of the original deck), they only find the card; delete returns the version without it.
+// Like the inner trees, a change copies the path it walks and shares everything else with the old version.
+public final class PersistentAttackTree {
+    static final PersistentAttackTree EMPTY = new PersistentAttackTree(null);
+
+    static final class Node {
+        final int att;
+        // The cards of the attack value, never empty
+        final PersistentHealthTree.Node cards;
+        final Node left;
+        final Node right;
+        final int height;
+        final int size;
+        final int maxHp;
+        final int maxAtt;
+        final int minAtt;
+
+        Node(int att, PersistentHealthTree.Node cards, Node left, Node right) {
+            this.att = att;
+            this.cards = cards;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + cards.size;
+            this.maxHp = Math.max(cards.maxValue, Math.max(maxHp(left), maxHp(right)));
+            this.maxAtt = right == null ? att : right.maxAtt;
+            this.minAtt = left == null ? att : left.minAtt;
+        }
+    }
+
+    final Node root;
+
+    private PersistentAttackTree(Node root) {
+        this.root = root;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public PersistentAttackTree insert(CardValue card) {
+        return new PersistentAttackTree(insert(root, card));
+    }
+
+    // The card must be in the tree
+    public PersistentAttackTree delete(CardValue card) {
+        return new PersistentAttackTree(delete(root, card));
+    }
+
+    // Smallest attack of at least hp that has a card surviving att, the least healthy such card
+    public CardValue firstPriority(int att, int hp) {
+        return firstPriorityOrSteal(root, att, hp, false);
+    }
+
+    // Largest attack below hp that has a card surviving att, the least healthy such card
+    public CardValue secondPriority(int att, int hp) {
+        return secondPriority(root, att, hp);
+    }
+
+    // Smallest attack of at least hp, its least healthy card
+    public CardValue thirdPriority(int att, int hp) {
+        return thirdPriority(root, hp);
+    }
+
+    // Largest attack, its least healthy card
+    public CardValue fourthPriority(int att, int hp) {
+        Node node = root;
+        if (node == null) {
+            return null;
+        }
+        while (node.right != null) {
+            node = node.right;
+        }
+        return first(node.cards);
+    }
+
+    // Smallest attack above attackLimit that has a card with more health than healthLimit, the least healthy such card
+    public CardValue stealCard(int attackLimit, int healthLimit) {
+        return firstPriorityOrSteal(root, healthLimit, attackLimit, true);
+    }
+
+    // Checking left-node-right order since we want minAtt, stealing only changes the attack bound to a strict one
+    private static CardValue firstPriorityOrSteal(Node node, int att, int hp, boolean steal) {
+        if (node == null || node.maxHp <= att || (steal ? node.maxAtt <= hp : node.maxAtt < hp)) {
+            return null;
+        }
+        CardValue found = firstPriorityOrSteal(node.left, att, hp, steal);
+        if (found != null) {
+            return found;
+        }
+        if (steal ? node.att > hp : node.att >= hp) {
+            PersistentHealthTree.Node surviving = PersistentHealthTree.firstAbove(node.cards, att);
+            if (surviving != null) {
+                return surviving.card;
+            }
+        }
+        return firstPriorityOrSteal(node.right, att, hp, steal);
+    }
+
+    // Right-node-left order since we want the maximum attack
+    private static CardValue secondPriority(Node node, int att, int hp) {
+        if (node == null || node.maxHp <= att || node.minAtt >= hp) {
+            return null;
+        }
+        CardValue found = secondPriority(node.right, att, hp);
+        if (found != null) {
+            return found;
+        }
+        if (node.att < hp) {
+            PersistentHealthTree.Node surviving = PersistentHealthTree.firstAbove(node.cards, att);
+            if (surviving != null) {
+                return surviving.card;
+            }
+        }
+        return secondPriority(node.left, att, hp);
+    }
+
+    private static CardValue thirdPriority(Node node, int hp) {
+        if (node == null || node.maxAtt < hp) {
+            return null;
+        }
+        CardValue found = thirdPriority(node.left, hp);
+        if (found != null) {
+            return found;
+        }
+        if (node.att >= hp) {
+            return first(node.cards);
+        }
+        return thirdPriority(node.right, hp);
+    }
+
+    // The first card of the smallest health
+    private static CardValue first(PersistentHealthTree.Node cards) {
+        while (cards.left != null) {
+            cards = cards.left;
+        }
+        return cards.card;
+    }
+
+    static int height(Node node) {
+        return node == null ? -1 : node.height;
+    }
+
+    static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int maxHp(Node node) {
+        return node == null ? Integer.MIN_VALUE : node.maxHp;
+    }
+
+    private static Node insert(Node node, CardValue card) {
+        if (node == null) {
+            return new Node(card.curAtt, PersistentHealthTree.insert(null, card, card.curHp), null, null);
+        }
+        if (card.curAtt == node.att) {
+            return new Node(node.att, PersistentHealthTree.insert(node.cards, card, card.curHp), node.left, node.right);
+        }
+        if (card.curAtt < node.att) {
+            return balance(node.att, node.cards, insert(node.left, card), node.right);
+        }
+        return balance(node.att, node.cards, node.left, insert(node.right, card));
+    }
+
+    private static Node delete(Node node, CardValue card) {
+        if (node == null) {
+            return null;
+        }
+        if (card.curAtt < node.att) {
+            return balance(node.att, node.cards, delete(node.left, card), node.right);
+        }
+        if (card.curAtt > node.att) {
+            return balance(node.att, node.cards, node.left, delete(node.right, card));
+        }
+        PersistentHealthTree.Node cards = PersistentHealthTree.delete(node.cards, card.curHp, card.seq);
+        if (cards != null) {
+            return new Node(node.att, cards, node.left, node.right);
+        }
+        // The attack value has no card left
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.att, successor.cards, node.left, deleteMin(node.right));
+    }
+
+    private static Node deleteMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.att, node.cards, deleteMin(node.left), node.right);
+    }
+
+    // A new node over the two subtrees, rotated when their heights differ by two
+    private static Node balance(int att, PersistentHealthTree.Node cards, Node left, Node right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node(left.att, left.cards, left.left, new Node(att, cards, left.right, right));
+            }
+            Node middle = left.right;
+            return new Node(middle.att, middle.cards,
+                    new Node(left.att, left.cards, left.left, middle.left),
+                    new Node(att, cards, middle.right, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node(right.att, right.cards, new Node(att, cards, left, right.left), right.right);
+            }
+            Node middle = right.left;
+            return new Node(middle.att, middle.cards,
+                    new Node(att, cards, left, middle.left),
+                    new Node(right.att, right.cards, middle.right, right.right));
+        }
+        return new Node(att, cards, left, right);
+    }
+}
@@ -0,0 +1,188 @@
+// PersistentHealthTree is the immutable HealthTree of a PersistentSession, an AVL tree of CardValues sorted by
+// health (missing health for the discard pile) and then by seq. The seq takes the place of the Queue of a value:
+// the cards of one value sit next to each other in the order they came, so the first of them is the leftmost.
+// A Queue would have to be copied whole on every change of a fork, an amortized persistent queue loses its
+// bound as soon as an old version is used again; the longer key costs one compare and keeps everything O(log n).
+// Every change returns a new tree made of the nodes on the changed path and the untouched subtrees of the old one,
+// which stays valid, so a version is kept or forked by holding on to it. The recursion is only log n deep.
+public final class PersistentHealthTree {
+    static final PersistentHealthTree MISSING_HEALTH = new PersistentHealthTree(true, null);
+
+    // Every field is set once, a node is shared by all the versions that reach it
+    static final class Node {
+        final CardValue card;
+        final int value;
+        final Node left;
+        final Node right;
+        final int height;
+        final int size;
+        final int maxValue;
+
+        Node(CardValue card, int value, Node left, Node right) {
+            this.card = card;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+            this.maxValue = right == null ? value : right.maxValue;
+        }
+    }
+
+    final boolean useMissingHp;
+    final Node root;
+
+    private PersistentHealthTree(boolean useMissingHp, Node root) {
+        this.useMissingHp = useMissingHp;
+        this.root = root;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    // The key of the card in this tree
+    private int value(CardValue card) {
+        return useMissingHp ? card.missingHp : card.curHp;
+    }
+
+    public PersistentHealthTree insert(CardValue card) {
+        return new PersistentHealthTree(useMissingHp, insert(root, card, value(card)));
+    }
+
+    // The card must be in the tree
+    public PersistentHealthTree delete(CardValue card) {
+        return new PersistentHealthTree(useMissingHp, delete(root, value(card), card.seq));
+    }
+
+    // The first card of the smallest value
+    public CardValue getMinHp() {
+        Node node = root;
+        if (node == null) {
+            return null;
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.card;
+    }
+
+    // The first card of the largest value of at most heal, null if there is none
+    public CardValue getMaxHpSmaller(int heal) {
+        Node node = root;
+        boolean found = false;
+        int best = 0;
+        while (node != null) {
+            if (node.value <= heal) {
+                found = true;
+                best = node.value;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return found ? firstAbove(root, (long) best - 1).card : null;
+    }
+
+    // The functions on the nodes, the deck's PersistentAttackTree keeps its inner trees as bare roots
+
+    static int height(Node node) {
+        return node == null ? -1 : node.height;
+    }
+
+    static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    // The leftmost node with a value above bound
+    static Node firstAbove(Node node, long bound) {
+        Node candidate = null;
+        while (node != null) {
+            if (node.value > bound) {
+                candidate = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return candidate;
+    }
+
+    static Node insert(Node node, CardValue card, int value) {
+        if (node == null) {
+            return new Node(card, value, null, null);
+        }
+        if (compare(value, card.seq, node) < 0) {
+            return balance(node.card, node.value, insert(node.left, card, value), node.right);
+        }
+        return balance(node.card, node.value, node.left, insert(node.right, card, value));
+    }
+
+    static Node delete(Node node, int value, long seq) {
+        if (node == null) {
+            return null;
+        }
+        int compare = compare(value, seq, node);
+        if (compare < 0) {
+            return balance(node.card, node.value, delete(node.left, value, seq), node.right);
+        }
+        if (compare > 0) {
+            return balance(node.card, node.value, node.left, delete(node.right, value, seq));
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        // The successor takes the place of the node
+        Node successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.card, successor.value, node.left, deleteMin(node.right));
+    }
+
+    private static Node deleteMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.card, node.value, deleteMin(node.left), node.right);
+    }
+
+    private static int compare(int value, long seq, Node node) {
+        if (value != node.value) {
+            return value < node.value ? -1 : 1;
+        }
+        return Long.compare(seq, node.card.seq);
+    }
+
+    // A new node over the two subtrees, rotated when their heights differ by two
+    private static Node balance(CardValue card, int value, Node left, Node right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node(left.card, left.value, left.left, new Node(card, value, left.right, right));
+            }
+            Node middle = left.right;
+            return new Node(middle.card, middle.value,
+                    new Node(left.card, left.value, left.left, middle.left),
+                    new Node(card, value, middle.right, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node(right.card, right.value, new Node(card, value, left, right.left), right.right);
+            }
+            Node middle = right.left;
+            return new Node(middle.card, middle.value,
+                    new Node(card, value, left, middle.left),
+                    new Node(right.card, right.value, middle.right, right.right));
+        }
+        return new Node(card, value, left, right);
+    }
+}
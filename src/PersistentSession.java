@@ -0,0 +1,155 @@
+// PersistentSession is a GameSession on the persistent trees: it plays the same game with the same results,
+// but its deck and discard pile are immutable versions and its cards are CardValues, so fork is O(1).
+// The fork and the session go on from the same state as two separate games that share every node neither
+// of them changed since; a command costs O(log n) new nodes, the old versions are left to the GC.
+// Meant for analysis that plays many continuations of one game state, where GameSession would need
+// Snapshot.fork, a full copy, for every one. A session itself is not thread safe, its forks can be played
+// on any threads at the same time.
+public class PersistentSession {
+    PersistentAttackTree deck = PersistentAttackTree.EMPTY;
+    PersistentHealthTree discardPile = PersistentHealthTree.MISSING_HEALTH;
+    int survivorPoint = 0;
+    int strangerPoint = 0;
+    // seq of the next CardValue made
+    long nextSeq;
+
+    // Result of the last battle
+    int lastPriority;
+    CardValue lastPlayed;
+    boolean lastReturned;
+    int lastRevived;
+
+    public PersistentSession() {
+    }
+
+    private PersistentSession(PersistentSession from) {
+        this.deck = from.deck;
+        this.discardPile = from.discardPile;
+        this.survivorPoint = from.survivorPoint;
+        this.strangerPoint = from.strangerPoint;
+        this.nextSeq = from.nextSeq;
+    }
+
+    // A new game in the same state, sharing the trees
+    public PersistentSession fork() {
+        return new PersistentSession(this);
+    }
+
+    // Creating cards, and adding them to the deck
+    public CardValue drawCard(String name, int att, int hp) {
+        CardValue card = CardValue.draw(name, att, hp, nextSeq++);
+        deck = deck.insert(card);
+        return card;
+    }
+
+    // Get the winner by points
+    public boolean survivorWins() {
+        return survivorPoint >= strangerPoint;
+    }
+
+    public int winningScore() {
+        return Math.max(strangerPoint, survivorPoint);
+    }
+
+    // Return the size of the deck
+    public int deckCount() {
+        return deck.size();
+    }
+
+    // Return the size of the discard pile
+    public int discardPileCount() {
+        return discardPile.size();
+    }
+
+    // Battle and Heal phase, returns the priority the card was found with, 0 if there was no card to play
+    public int battle(int att, int hp, int heal) {
+        CardValue suitable = deck.firstPriority(att, hp);
+        int priority = 1;
+        if (suitable == null) {
+            suitable = deck.secondPriority(att, hp);
+            priority = 2;
+            if (suitable == null) {
+                suitable = deck.thirdPriority(att, hp);
+                priority = 3;
+                if (suitable == null) {
+                    suitable = deck.fourthPriority(att, hp);
+                    priority = 4;
+                }
+            }
+        }
+        if (suitable == null) {
+            priority = 0;
+        }
+
+        // Same points as GameSession.battle
+        switch (priority) {
+            case 0:
+                strangerPoint += 2;
+                break;
+            case 1:
+                strangerPoint += 1;
+                survivorPoint += 2;
+                break;
+            case 2:
+                strangerPoint += 1;
+                survivorPoint += 1;
+                break;
+            case 3:
+                strangerPoint += 2;
+                survivorPoint += 2;
+                break;
+            case 4:
+                strangerPoint += 2;
+                survivorPoint += 1;
+                break;
+        }
+
+        boolean returned = false;
+        if (suitable != null) {
+            deck = deck.delete(suitable);
+            CardValue played = suitable.takeDamage(att, nextSeq++);
+            if (played.curHp > 0) {
+                returned = true;
+                deck = deck.insert(played);
+            } else {
+                discardPile = discardPile.insert(played);
+            }
+        }
+
+        int reviveCounter = revive(heal);
+
+        lastPriority = priority;
+        lastPlayed = suitable;
+        lastReturned = returned;
+        lastRevived = reviveCounter;
+        return priority;
+    }
+
+    // Fire phase, the card by card revival of GameSession: the most missing health the heal fully covers first,
+    // then what is left partially on the card with the least. Returns the number of cards fully revived.
+    public int revive(int heal) {
+        int reviveCounter = 0;
+        while (heal > 0 && !discardPile.isEmpty()) {
+            CardValue revive = discardPile.getMaxHpSmaller(heal);
+            if (revive == null) {
+                revive = discardPile.getMinHp();
+                discardPile = discardPile.delete(revive).insert(revive.partialRevive(heal, nextSeq++));
+                break;
+            }
+            discardPile = discardPile.delete(revive);
+            heal -= revive.missingHp;
+            deck = deck.insert(revive.fullyRevive(nextSeq++));
+            reviveCounter++;
+        }
+        return reviveCounter;
+    }
+
+    // Stealing the suitable card, null if there is none
+    public CardValue stealCard(int attackLimit, int healthLimit) {
+        CardValue card = deck.stealCard(attackLimit, healthLimit);
+        if (card != null) {
+            deck = deck.delete(card);
+        }
+        return card;
+    }
+}
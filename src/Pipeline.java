@@ -0,0 +1,326 @@
+import java.io.IOException;
+
+// Pipeline plays an encounter file on three threads: a parser thread decodes the commands into a RecordRing,
+// the calling thread runs them on the session one after the other, and a writer thread formats the results
+// it gets through a second RecordRing. The game itself stays on one thread, only the text work moves off it.
+// The output is the same as Main.run's, also when the input stops at an invalid command or a bad argument:
+// everything before it is written, then the same message or exception comes out of run.
+// The latencies recorded into stats and the metrics are the engine's time per command, parsing and formatting
+// run beside it. -Dnightpass.pipeline=true makes Main play every file this way.
+public class Pipeline {
+    static final boolean ENABLED = Boolean.getBoolean("nightpass.pipeline");
+
+    // Records in flight between two stages
+    private static final int CAPACITY = 1 << 12;
+    // Kinds of record besides the commands of CommandReader: the input failed, and the end of the results
+    private static final int FAILED = -2;
+    private static final int END = -3;
+
+    private final GameSession session;
+    private final CommandSource reader;
+    private final OutputWriter out;
+    private final RecordRing commands = new RecordRing(CAPACITY);
+    private final RecordRing results = new RecordRing(CAPACITY);
+    // What stopped the parser or the writer, read after their thread is joined
+    private Throwable readFailure;
+    private IOException writeFailure;
+
+    private Pipeline(GameSession session, CommandSource reader, OutputWriter out) {
+        this.session = session;
+        this.reader = reader;
+        this.out = out;
+    }
+
+    // Same contract as Main.run: returns false if the input stopped at an invalid command
+    public static boolean run(GameSession session, CommandSource reader, OutputWriter out, RunStats stats) throws IOException {
+        return new Pipeline(session, reader, out).run(stats);
+    }
+
+    private boolean run(RunStats stats) throws IOException {
+        Thread parser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                parse();
+            }
+        }, "pipeline-parser");
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "pipeline-writer");
+        parser.setDaemon(true);
+        writer.setDaemon(true);
+        parser.start();
+        writer.start();
+
+        int last = CommandReader.EOF;
+        try {
+            last = play(stats);
+        } finally {
+            // Whatever happened, the parser stops waiting for room and the writer gets its end
+            commands.close();
+            int slot = results.claim();
+            if (slot >= 0) {
+                results.kind[slot] = END;
+                results.commit();
+            }
+            results.publish();
+            join(writer);
+        }
+        join(parser);
+
+        if (writeFailure != null) {
+            throw writeFailure;
+        }
+        if (last == FAILED) {
+            rethrow(readFailure);
+        }
+        if (last == CommandReader.INVALID) {
+            System.out.println("Invalid command: " + reader.invalidCommand());
+            return false;
+        }
+        return true;
+    }
+
+    // Engine stage, on the calling thread: returns the kind of record the input ended with
+    private int play(RunStats stats) {
+        GameSession session = this.session;
+        RecordRing commands = this.commands;
+        RecordRing results = this.results;
+        Metrics metrics = session.metrics;
+        boolean timed = stats != null || metrics != null;
+        // The opening draws are loaded together, as in Main.run
+        boolean opening = GameSession.LOAD_OPENING;
+        while (true) {
+            // The writer should not wait on results this thread is sitting on
+            if (!commands.available()) {
+                results.publish();
+            }
+            int in = commands.next();
+            int command = commands.kind[in];
+            if (command == CommandReader.EOF || command == CommandReader.INVALID || command == FAILED) {
+                session.loadOpening();
+                return command;
+            }
+            long start = timed ? System.nanoTime() : 0;
+            if (opening && command != CommandReader.DRAW_CARD) {
+                session.loadOpening();
+                opening = false;
+            }
+            int slot = results.claim();
+            int type;
+            results.kind[slot] = command;
+            switch (command) {
+                case CommandReader.DRAW_CARD: {
+                    String name = commands.text[in];
+                    if (opening) {
+                        session.drawOpening(name, commands.a[in], commands.b[in]);
+                    } else {
+                        session.drawCard(name, commands.a[in], commands.b[in]);
+                    }
+                    results.text[slot] = name;
+                    type = Metrics.DRAW_CARD;
+                    break;
+                }
+                case CommandReader.BATTLE: {
+                    int priority = session.battle(commands.a[in], commands.b[in], commands.c[in]);
+                    results.a[slot] = priority;
+                    results.b[slot] = session.lastReturned ? 1 : 0;
+                    results.c[slot] = session.lastRevived;
+                    results.text[slot] = priority == 0 ? null : session.cards.name(session.lastPlayed);
+                    type = Metrics.BATTLE + priority;
+                    break;
+                }
+                case CommandReader.FIND_WINNING: {
+                    results.a[slot] = session.winningScore();
+                    results.b[slot] = session.survivorWins() ? 1 : 0;
+                    type = Metrics.FIND_WINNING;
+                    break;
+                }
+                case CommandReader.DECK_COUNT: {
+                    results.a[slot] = session.deckCount();
+                    type = Metrics.DECK_COUNT;
+                    break;
+                }
+                case CommandReader.DISCARD_PILE_COUNT: {
+                    results.a[slot] = session.discardPileCount();
+                    type = Metrics.DISCARD_PILE_COUNT;
+                    break;
+                }
+                case CommandReader.COUNT_CARDS: {
+                    results.a[slot] = commands.a[in];
+                    results.b[slot] = commands.b[in];
+                    results.c[slot] = session.countCards(commands.a[in], commands.b[in]);
+                    type = Metrics.COUNT_CARDS;
+                    break;
+                }
+                case CommandReader.STEAL_ALL: {
+                    int count = session.stealAll(commands.a[in], commands.b[in]);
+                    results.a[slot] = count;
+                    results.text[slot] = Main.stolenNames(session, count);
+                    type = Metrics.STEAL_ALL;
+                    break;
+                }
+                case CommandReader.KTH_CARD: {
+                    int card = session.kthCard(commands.a[in]);
+                    results.a[slot] = commands.a[in];
+                    results.text[slot] = card == CardStore.NONE ? null : session.cards.name(card);
+                    type = Metrics.KTH_CARD;
+                    break;
+                }
+                default: {
+                    int stolen = session.stealCard(commands.a[in], commands.b[in]);
+                    results.text[slot] = stolen == CardStore.NONE ? null : session.cards.name(stolen);
+                    type = Metrics.STEAL_CARD;
+                }
+            }
+            results.commit();
+            commands.done();
+            if (timed) {
+                long nanos = System.nanoTime() - start;
+                if (stats != null) {
+                    stats.record(nanos);
+                }
+                if (metrics != null) {
+                    metrics.command(type, nanos);
+                }
+            }
+        }
+    }
+
+    // Parser stage: every command and its arguments into a record, up to the end of the input or the first
+    // command that stops the game
+    private void parse() {
+        RecordRing commands = this.commands;
+        CommandSource reader = this.reader;
+        while (true) {
+            int slot = commands.claim();
+            if (slot < 0) {
+                return;
+            }
+            int command;
+            try {
+                command = reader.next();
+            } catch (Throwable e) {
+                readFailure = e;
+                command = FAILED;
+            }
+            commands.kind[slot] = command;
+            switch (command) {
+                case CommandReader.DRAW_CARD:
+                    commands.text[slot] = reader.name;
+                    commands.a[slot] = reader.att;
+                    commands.b[slot] = reader.hp;
+                    break;
+                case CommandReader.BATTLE:
+                    commands.a[slot] = reader.att;
+                    commands.b[slot] = reader.hp;
+                    commands.c[slot] = reader.heal;
+                    break;
+                case CommandReader.STEAL_CARD:
+                case CommandReader.COUNT_CARDS:
+                case CommandReader.STEAL_ALL:
+                    commands.a[slot] = reader.att;
+                    commands.b[slot] = reader.hp;
+                    break;
+                case CommandReader.KTH_CARD:
+                    commands.a[slot] = reader.att;
+                    break;
+                default:
+            }
+            commands.commit();
+            if (command == CommandReader.EOF || command == CommandReader.INVALID || command == FAILED) {
+                commands.publish();
+                return;
+            }
+        }
+    }
+
+    // Writer stage: the result lines, in order. After a write fails the results are still taken,
+    // so the engine never waits for room.
+    private void write() {
+        RecordRing results = this.results;
+        OutputWriter out = this.out;
+        while (true) {
+            int slot = results.next();
+            if (slot < 0) {
+                return;
+            }
+            int kind = results.kind[slot];
+            if (kind == END) {
+                results.done();
+                return;
+            }
+            if (writeFailure == null) {
+                try {
+                    writeResult(out, results, slot, kind);
+                    out.newLine();
+                } catch (IOException e) {
+                    writeFailure = e;
+                }
+            }
+            results.done();
+        }
+    }
+
+    private static void writeResult(OutputWriter out, RecordRing results, int slot, int kind) throws IOException {
+        switch (kind) {
+            case CommandReader.DRAW_CARD:
+                Main.writeAdded(out, results.text[slot]);
+                break;
+            case CommandReader.BATTLE:
+                Main.writeBattle(out, results.a[slot], results.text[slot], results.b[slot] != 0, results.c[slot]);
+                break;
+            case CommandReader.FIND_WINNING:
+                Main.writeWinner(out, results.b[slot] != 0, results.a[slot]);
+                break;
+            case CommandReader.DECK_COUNT:
+                Main.writeDeckCount(out, results.a[slot]);
+                break;
+            case CommandReader.DISCARD_PILE_COUNT:
+                Main.writeDiscardPileCount(out, results.a[slot]);
+                break;
+            case CommandReader.COUNT_CARDS:
+                Main.writeCount(out, results.a[slot], results.b[slot], results.c[slot]);
+                break;
+            case CommandReader.KTH_CARD:
+                Main.writeKth(out, results.a[slot], results.text[slot]);
+                break;
+            case CommandReader.STEAL_ALL:
+                Main.writeStolenAll(out, results.a[slot], results.text[slot]);
+                break;
+            default:
+                Main.writeStolen(out, results.text[slot]);
+        }
+    }
+
+    private static void join(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Throw what the parser caught the way Main.run would have thrown it
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IOException(failure);
+    }
+}
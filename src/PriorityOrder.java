@@ -0,0 +1,81 @@
+// PriorityOrder is the SelectionPolicy of the deck's four searches, tried in a fixed order until one finds a card.
+// DEFAULT is the game's order: 1 survive and kill, 2 survive, 3 kill, 4 the strongest card.
+// Any order of all four plays a card whenever the deck has one, since the fourth search always finds one.
+public class PriorityOrder implements SelectionPolicy {
+    public static final PriorityOrder DEFAULT = new PriorityOrder(new int[] {1, 2, 3, 4});
+
+    private final int[] order;
+    // The game's order, searched without the loop
+    private final boolean standard;
+
+    // The order must hold each of 1, 2, 3 and 4 once
+    public PriorityOrder(int[] order) {
+        if (order.length != 4) {
+            throw new IllegalArgumentException("A priority order has 4 searches, not " + order.length);
+        }
+        boolean[] seen = new boolean[5];
+        for (int priority : order) {
+            if (priority < 1 || priority > 4 || seen[priority]) {
+                throw new IllegalArgumentException("A priority order holds each of 1, 2, 3 and 4 once");
+            }
+            seen[priority] = true;
+        }
+        this.order = order.clone();
+        this.standard = order[0] == 1 && order[1] == 2 && order[2] == 3;
+    }
+
+    // The order written as its digits, "1234" for DEFAULT
+    public static PriorityOrder parse(String digits) {
+        int[] order = new int[digits.length()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = digits.charAt(i) - '0';
+        }
+        return new PriorityOrder(order);
+    }
+
+    @Override
+    public int select(DeckIndex deck, int att, int hp) {
+        if (standard) {
+            int card = deck.firstPriority(att, hp);
+            if (card == CardStore.NONE) {
+                card = deck.secondPriority(att, hp);
+                if (card == CardStore.NONE) {
+                    card = deck.thirdPriority(att, hp);
+                    if (card == CardStore.NONE) {
+                        card = deck.fourthPriority(att, hp);
+                    }
+                }
+            }
+            return card;
+        }
+        for (int priority : order) {
+            int card = find(deck, priority, att, hp);
+            if (card != CardStore.NONE) {
+                return card;
+            }
+        }
+        return CardStore.NONE;
+    }
+
+    private static int find(DeckIndex deck, int priority, int att, int hp) {
+        switch (priority) {
+            case 1:
+                return deck.firstPriority(att, hp);
+            case 2:
+                return deck.secondPriority(att, hp);
+            case 3:
+                return deck.thirdPriority(att, hp);
+            default:
+                return deck.fourthPriority(att, hp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder digits = new StringBuilder();
+        for (int priority : order) {
+            digits.append(priority);
+        }
+        return digits.toString();
+    }
+}
@@ -1,50 +1,82 @@
 // Queue to store cards with the same att and hp.
 // We want the first drawn card to be played first (FIFO).
+// The cards are card handles of the game's CardStore, kept in a circular array that doubles when it is full. Most queues only ever hold one card,
+// so a single card is kept in a field and the array is only made when a second one comes.
 public class Queue {
     int size;
-    QueueNode front;
-    QueueNode back;
+    // The only card while there is no array
+    private int single;
+    private int[] cards;
+    // Index of the front card in the array
+    private int head;
 
     Queue(){
         this.size = 0;
-        this.front = null;
-        this.back = null;
+        this.single = CardStore.NONE;
+        this.cards = null;
     }
 
     // Inserting to the end
-    public void enqueue(Card card){
-        QueueNode node = new QueueNode(card);
-        if(size == 0){
-            front = node;
-            back = node;
+    public void enqueue(int card){
+        if(cards == null){
+            if(size == 0){
+                single = card;
+                size = 1;
+                return;
+            }
+            cards = new int[4];
+            cards[0] = single;
+            single = CardStore.NONE;
+            head = 0;
         }
-        else{
-            back.next = node;
-            back = node;
+        else if(size == cards.length){
+            grow();
         }
+        cards[(head + size) & (cards.length - 1)] = card;
         size ++;
     }
 
-    // Removing the front element
-    public void dequeue(){
+    // Removing the front element, returns it
+    public int dequeue(){
         if(size == 0){
+            return CardStore.NONE;
         }
-        else{
-            front = front.next;
-            size --;
-            if(front == null){
-                back = null;
-            }
+        if(cards == null){
+            int card = single;
+            single = CardStore.NONE;
+            size = 0;
+            return card;
         }
+        int card = cards[head];
+        head = (head + 1) & (cards.length - 1);
+        size --;
+        // A queue that held many cards does not keep its big array once it is empty
+        if(size == 0 && cards.length > 64){
+            cards = null;
+        }
+        return card;
     }
 
     // Getting the first element
-    public Card peek(){
+    public int peek(){
         if(size == 0){
-            return null;
-        }
-        else{
-            return front.card;
+            return CardStore.NONE;
         }
+        return cards == null ? single : cards[head];
+    }
+
+    // The card at the given place from the front
+    public int get(int index){
+        return cards == null ? single : cards[(head + index) & (cards.length - 1)];
+    }
+
+    // Double the array, the cards are unrolled to the start of the new one
+    private void grow(){
+        int[] grown = new int[2 * cards.length];
+        int tail = cards.length - head;
+        System.arraycopy(cards, head, grown, 0, tail);
+        System.arraycopy(cards, 0, grown, tail, head);
+        cards = grown;
+        head = 0;
     }
 }
@@ -1,9 +0,0 @@
-// Node of the Queue
-public class QueueNode {
-    Card card;
-    QueueNode next;
-    QueueNode(Card card){
-        this.card = card;
-        this.next = null;
-    }
-}
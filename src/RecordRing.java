@@ -0,0 +1,109 @@
+// RecordRing is a bounded single-producer single-consumer queue of fixed-size records, the stages of the
+// Pipeline pass the commands and the results through it. A record is a slot of parallel arrays, a kind,
+// three ints and a String, so nothing is allocated per record and the slots are reused round the ring.
+// The producer fills the slot claim() gives it and commits it; the consumer reads the slot next() gives it
+// and marks it done. Both sides only touch the shared counters once per batch of records
+// (or before they wait), which keeps the two threads from fighting over the same cache line on every record.
+public class RecordRing {
+    // Records a side handles before it publishes its counter
+    private static final int BATCH = 64;
+
+    final int[] kind;
+    final int[] a;
+    final int[] b;
+    final int[] c;
+    final String[] text;
+    private final int mask;
+
+    // Records the producer made visible, and the records the consumer gave back
+    private volatile long published;
+    private volatile long released;
+    // Set when one side gives up, the other stops waiting
+    private volatile boolean closed;
+
+    // Producer side: the next record to fill, and the last released count it saw
+    private long tail;
+    private long seenReleased;
+    // Consumer side: the next record to read, and the last published count it saw
+    private long head;
+    private long seenPublished;
+
+    // capacity is rounded up to a power of two
+    public RecordRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2 * BATCH) - 1) << 1;
+        kind = new int[size];
+        a = new int[size];
+        b = new int[size];
+        c = new int[size];
+        text = new String[size];
+        mask = size - 1;
+    }
+
+    // The slot to fill next, waits while the ring is full. Returns -1 once the ring is closed.
+    int claim() {
+        if (tail - seenReleased > mask) {
+            publish();
+            while (tail - (seenReleased = released) > mask) {
+                if (closed) {
+                    return -1;
+                }
+                Thread.yield();
+            }
+        }
+        return (int) tail & mask;
+    }
+
+    // The claimed slot is filled
+    void commit() {
+        tail++;
+        if ((tail & (BATCH - 1)) == 0) {
+            published = tail;
+        }
+    }
+
+    // Make every committed record visible to the consumer
+    void publish() {
+        if (published != tail) {
+            published = tail;
+        }
+    }
+
+    // Whether next() has a record without waiting
+    boolean available() {
+        return head != seenPublished || head != (seenPublished = published);
+    }
+
+    // The slot to read next, waits while the ring is empty. Returns -1 once the ring is closed.
+    int next() {
+        if (head == seenPublished) {
+            release();
+            while (head == (seenPublished = published)) {
+                if (closed) {
+                    return -1;
+                }
+                Thread.yield();
+            }
+        }
+        return (int) head & mask;
+    }
+
+    // The slot from next() was read, it can be filled again
+    void done() {
+        text[(int) head & mask] = null;
+        head++;
+        if ((head & (BATCH - 1)) == 0) {
+            released = head;
+        }
+    }
+
+    private void release() {
+        if (released != head) {
+            released = head;
+        }
+    }
+
+    // Stop both sides from waiting, records already published can still be read
+    void close() {
+        closed = true;
+    }
+}
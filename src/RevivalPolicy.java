@@ -0,0 +1,8 @@
+// RevivalPolicy is the fire phase of a battle: how the heal of the Stranger's card brings discarded cards
+// back into the deck. It works on the session's discard pile, deck and cards directly.
+// GreedyRevival.DEFAULT is the game's own fire phase.
+public interface RevivalPolicy {
+
+    // Spend heal on the cards of the session's discard pile, returns the number of cards fully revived
+    int revive(GameSession session, int heal);
+}
@@ -0,0 +1,55 @@
+// RunStats collects the throughput numbers of one encounter file:
+// the number of commands, the wall time, the latency of every command and the highest heap use seen.
+// The heap is shared by every session of the process, so its peak is the process' peak while the file ran.
+public class RunStats {
+    // How often the used heap is sampled, in commands
+    private static final int HEAP_SAMPLE = 1024;
+
+    final String name;
+    final LatencyHistogram latency = new LatencyHistogram();
+    long commands;
+    long startNanos;
+    long endNanos;
+    long peakHeap;
+    boolean finished;
+
+    public RunStats(String name) {
+        this.name = name;
+    }
+
+    void start() {
+        startNanos = System.nanoTime();
+        sampleHeap();
+    }
+
+    void stop() {
+        endNanos = System.nanoTime();
+        sampleHeap();
+    }
+
+    // Called after every command with the time it took, parsing excluded
+    void record(long nanos) {
+        latency.record(nanos);
+        commands++;
+        if (commands % HEAP_SAMPLE == 0) {
+            sampleHeap();
+        }
+    }
+
+    private void sampleHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        if (used > peakHeap) {
+            peakHeap = used;
+        }
+    }
+
+    public double seconds() {
+        return (endNanos - startNanos) / 1e9;
+    }
+
+    public double commandsPerSecond() {
+        double seconds = seconds();
+        return seconds > 0 ? commands / seconds : 0;
+    }
+}
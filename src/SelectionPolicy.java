@@ -0,0 +1,9 @@
+// SelectionPolicy picks the card the Survivor plays in a battle. It only decides which card is played:
+// the game scores the card by what it does against the Stranger's card (GameSession.priority), whatever
+// search found it. PriorityOrder.DEFAULT is the game's own selection.
+public interface SelectionPolicy {
+
+    // Take the card to play against a Stranger card of att and hp out of the deck, CardStore.NONE to play none.
+    // The game goes on with any choice, but only an empty deck has no card to play by the rules.
+    int select(DeckIndex deck, int att, int hp);
+}
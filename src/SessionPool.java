@@ -0,0 +1,83 @@
+import java.util.concurrent.*;
+
+// SessionPool plays many encounter files in one process on a fixed number of worker threads.
+// Every file gets its own GameSession, so the games are independent; what they share is the
+// JVM start-up and the JIT warm-up, which are paid once instead of once per file.
+public class SessionPool implements AutoCloseable {
+    private final ExecutorService workers;
+
+    public SessionPool(int threads) {
+        this.workers = Executors.newFixedThreadPool(threads);
+    }
+
+    // Number of threads that fit the machine
+    public static int defaultThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    // Queue one file, the future completes with false if the file stopped at an invalid command
+    public Future<Boolean> submit(String inFile, String outFile) {
+        return submit(inFile, outFile, null);
+    }
+
+    // Same, and collect the throughput numbers of the file into stats if it is not null
+    public Future<Boolean> submit(final String inFile, final String outFile, final RunStats stats) {
+        return workers.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                if (stats == null) {
+                    return Main.runFile(inFile, outFile);
+                }
+                stats.start();
+                boolean finished = Main.runFile(inFile, outFile, stats);
+                stats.stop();
+                stats.finished = finished;
+                return finished;
+            }
+        });
+    }
+
+    // Play every inFiles[i] into outFiles[i] and wait for all of them
+    public boolean[] runAll(String[] inFiles, String[] outFiles) throws InterruptedException {
+        return runAll(inFiles, outFiles, null);
+    }
+
+    // Same, stats[i] collects the numbers of inFiles[i] when stats is not null
+    public boolean[] runAll(String[] inFiles, String[] outFiles, RunStats[] stats) throws InterruptedException {
+        Future<Boolean>[] futures = submitAll(inFiles, outFiles, stats);
+        boolean[] finished = new boolean[futures.length];
+        for (int i = 0; i < futures.length; i++) {
+            try {
+                finished[i] = futures[i].get();
+            } catch (ExecutionException e) {
+                // runFile reports its own errors, anything else is a bug worth seeing
+                throw new IllegalStateException("Session for " + inFiles[i] + " failed", e.getCause());
+            }
+        }
+        return finished;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Future<Boolean>[] submitAll(String[] inFiles, String[] outFiles, RunStats[] stats) {
+        Future<Boolean>[] futures = new Future[inFiles.length];
+        for (int i = 0; i < inFiles.length; i++) {
+            futures[i] = submit(inFiles[i], outFiles[i], stats == null ? null : stats[i]);
+        }
+        return futures;
+    }
+
+    // Stop taking files and wait for the queued ones to finish.
+    // An interrupt stops the wait and is passed on through the thread's flag, the queued files are cancelled.
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Keep waiting, long games are expected
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
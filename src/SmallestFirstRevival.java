@@ -0,0 +1,20 @@
+// SmallestFirstRevival revives as many cards as it can instead of the most damaged ones: the cards with the least
+// missing health first while the heal covers them fully, then what is left goes partially to the next one,
+// the same card the game's partial revival picks. GameSession.reviveSmallestFirst does it with one walk and one
+// split of the discard pile.
+public class SmallestFirstRevival implements RevivalPolicy {
+    public static final SmallestFirstRevival INSTANCE = new SmallestFirstRevival();
+
+    private SmallestFirstRevival() {
+    }
+
+    @Override
+    public int revive(GameSession session, int heal) {
+        return session.reviveSmallestFirst(heal);
+    }
+
+    @Override
+    public String toString() {
+        return "smallest";
+    }
+}
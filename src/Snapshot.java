@@ -0,0 +1,308 @@
+import java.io.*;
+
+// Snapshot saves the whole state of a game, the scores, the deck and the discard pile, to resume it later
+// or to start many games from the same point. It uses the varints of EncounterLog:
+//   "NPSS", version byte, survivor points, stranger points
+//   the names of the game, count then each name, cards refer to them by id
+//   the deck: cards, attack nodes, then for every attack in increasing order: the attack, its health values,
+//     and for every health value in increasing order: the health, its cards, and the cards front to back,
+//     each as name id, base attack, base health, missing health
+//   the discard pile: cards, missing health values, then for every value in increasing order: the value,
+//     its cards, and the cards front to back, each as name id, base attack, current attack, base health,
+//     current health
+// Everything is written in key order, so read builds every tree balanced straight from the sorted nodes,
+// O(n) instead of an insert per card, and the queues come back in the same first come first served order.
+// Stolen cards are not in the snapshot, the cards of the restored game get new handles.
+public class Snapshot {
+    static final byte[] MAGIC = {'N', 'P', 'S', 'S'};
+    static final int VERSION = 1;
+    private static final int NIL = HealthArena.NIL;
+
+    public static void write(GameSession session, String file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+            write(session, out);
+        }
+    }
+
+    public static GameSession read(String file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            return read(in);
+        }
+    }
+
+    // A new game in the same state, through an in-memory snapshot.
+    // The fork has no Metrics: forks are played and dropped, nothing would close them and take them out of the dumps.
+    public static GameSession fork(GameSession session) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            write(session, bytes);
+            return read(new ByteArrayInputStream(bytes.toByteArray()), false);
+        } catch (IOException e) {
+            // Nothing here does real I/O
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Only a game on an AttackTree deck can be saved
+    public static void write(GameSession session, OutputStream out) throws IOException {
+        if (!(session.deck instanceof AttackTree)) {
+            throw new IllegalArgumentException("Only a game on an AttackTree deck can be saved");
+        }
+        AttackTree deck = (AttackTree) session.deck;
+        CardStore cards = session.cards;
+        out.write(MAGIC);
+        out.write(VERSION);
+        EncounterLog.writeInt(out, session.survivorPoint);
+        EncounterLog.writeInt(out, session.strangerPoint);
+
+        NameTable names = cards.names;
+        EncounterLog.writeVarint(out, names.size());
+        for (int id = 0; id < names.size(); id++) {
+            EncounterLog.writeName(out, names.name(id));
+        }
+
+        AttackNode[] nodes = new AttackNode[deck.size()];
+        int nodeCount = inOrder(deck, nodes);
+        EncounterLog.writeVarint(out, deck.size());
+        EncounterLog.writeVarint(out, nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            AttackNode node = nodes[i];
+            EncounterLog.writeInt(out, node.nodeAtt);
+            if (node.healthTree == null) {
+                EncounterLog.writeVarint(out, 1);
+                EncounterLog.writeInt(out, cards.curHp[node.card]);
+                EncounterLog.writeVarint(out, 1);
+                writeDeckCard(out, cards, node.card);
+                continue;
+            }
+            HealthTree tree = node.healthTree;
+            int[] slots = new int[tree.size()];
+            int slotCount = inOrder(tree, slots);
+            EncounterLog.writeVarint(out, slotCount);
+            for (int j = 0; j < slotCount; j++) {
+                int slot = slots[j];
+                HealthArena arena = tree.arena;
+                int count = arena.count(slot);
+                EncounterLog.writeInt(out, arena.value[slot]);
+                EncounterLog.writeVarint(out, count);
+                for (int k = 0; k < count; k++) {
+                    writeDeckCard(out, cards, arena.cardAt(slot, k));
+                }
+            }
+        }
+
+        HealthTree discardPile = session.discardPile;
+        HealthArena arena = discardPile.arena;
+        int[] slots = new int[discardPile.size()];
+        int slotCount = inOrder(discardPile, slots);
+        EncounterLog.writeVarint(out, discardPile.size());
+        EncounterLog.writeVarint(out, slotCount);
+        for (int j = 0; j < slotCount; j++) {
+            int slot = slots[j];
+            int count = arena.count(slot);
+            EncounterLog.writeInt(out, arena.value[slot]);
+            EncounterLog.writeVarint(out, count);
+            for (int k = 0; k < count; k++) {
+                int card = arena.cardAt(slot, k);
+                EncounterLog.writeVarint(out, cards.name[card]);
+                EncounterLog.writeInt(out, cards.baseAtt[card]);
+                EncounterLog.writeInt(out, cards.curAtt[card]);
+                EncounterLog.writeInt(out, cards.baseHp[card]);
+                EncounterLog.writeInt(out, cards.curHp[card]);
+            }
+        }
+        out.flush();
+    }
+
+    // The game has Metrics when they are on, the caller closes them when it is over
+    public static GameSession read(InputStream in) throws IOException {
+        return read(in, true);
+    }
+
+    private static GameSession read(InputStream in, boolean metered) throws IOException {
+        for (byte b : MAGIC) {
+            if (in.read() != b) {
+                throw new IOException("Not a game snapshot");
+            }
+        }
+        int version = in.read();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int survivorPoint = EncounterLog.readInt(in);
+        int strangerPoint = EncounterLog.readInt(in);
+
+        CardStore cards = new CardStore();
+        int nameCount = EncounterLog.readVarint(in);
+        String[] names = new String[nameCount];
+        for (int id = 0; id < nameCount; id++) {
+            names[id] = EncounterLog.readName(in);
+            // Interned in the same order, so the ids stay the same
+            cards.names.intern(names[id]);
+        }
+
+        GameSession session = new GameSession(cards, GameSession.POOL_NODES, metered);
+        session.survivorPoint = survivorPoint;
+        session.strangerPoint = strangerPoint;
+        AttackTree deck = (AttackTree) session.deck;
+
+        int deckSize = EncounterLog.readVarint(in);
+        int nodeCount = EncounterLog.readVarint(in);
+        AttackNode[] nodes = new AttackNode[nodeCount];
+        int read = 0;
+        long lastAtt = Long.MIN_VALUE;
+        for (int i = 0; i < nodeCount; i++) {
+            int att = EncounterLog.readInt(in);
+            int slotCount = EncounterLog.readVarint(in);
+            if (att <= lastAtt || slotCount < 1) {
+                throw corrupt();
+            }
+            lastAtt = att;
+            HealthTree tree = null;
+            int[] slots = null;
+            int treeSize = 0;
+            long lastHp = Long.MIN_VALUE;
+            for (int j = 0; j < slotCount; j++) {
+                int hp = EncounterLog.readInt(in);
+                int count = EncounterLog.readVarint(in);
+                if (hp <= lastHp || count < 1) {
+                    throw corrupt();
+                }
+                lastHp = hp;
+                int first = readDeckCard(in, cards, names, att, hp);
+                if (slotCount == 1 && count == 1) {
+                    nodes[i] = new AttackNode(first, att, hp);
+                    treeSize = 1;
+                    break;
+                }
+                if (tree == null) {
+                    tree = deck.innerTree();
+                    slots = new int[slotCount];
+                }
+                HealthArena arena = tree.arena;
+                int slot = arena.alloc(hp, first);
+                for (int k = 1; k < count; k++) {
+                    arena.enqueue(slot, readDeckCard(in, cards, names, att, hp));
+                }
+                slots[j] = slot;
+                treeSize += count;
+            }
+            if (tree != null) {
+                tree.build(slots, slotCount, treeSize);
+                nodes[i] = deck.node(att, tree);
+            }
+            read += treeSize;
+        }
+        if (read != deckSize) {
+            throw corrupt();
+        }
+        deck.build(nodes, nodeCount, deckSize);
+
+        HealthTree discardPile = session.discardPile;
+        HealthArena arena = discardPile.arena;
+        int pileSize = EncounterLog.readVarint(in);
+        int slotCount = EncounterLog.readVarint(in);
+        int[] slots = new int[slotCount];
+        read = 0;
+        long lastValue = Long.MIN_VALUE;
+        for (int j = 0; j < slotCount; j++) {
+            int missingHp = EncounterLog.readInt(in);
+            int count = EncounterLog.readVarint(in);
+            if (missingHp <= lastValue || count < 1) {
+                throw corrupt();
+            }
+            lastValue = missingHp;
+            int slot = NIL;
+            for (int k = 0; k < count; k++) {
+                int id = EncounterLog.readVarint(in);
+                if (id < 0 || id >= nameCount) {
+                    throw corrupt();
+                }
+                int baseAtt = EncounterLog.readInt(in);
+                int curAtt = EncounterLog.readInt(in);
+                int baseHp = EncounterLog.readInt(in);
+                int curHp = EncounterLog.readInt(in);
+                int card = cards.add(names[id], baseAtt, baseHp);
+                cards.curAtt[card] = curAtt;
+                cards.curHp[card] = curHp;
+                cards.missingHp[card] = missingHp;
+                if (k == 0) {
+                    slot = arena.alloc(missingHp, card);
+                } else {
+                    arena.enqueue(slot, card);
+                }
+            }
+            slots[j] = slot;
+            read += count;
+        }
+        if (read != pileSize) {
+            throw corrupt();
+        }
+        discardPile.build(slots, slotCount, pileSize);
+        return session;
+    }
+
+    private static void writeDeckCard(OutputStream out, CardStore cards, int card) throws IOException {
+        EncounterLog.writeVarint(out, cards.name[card]);
+        EncounterLog.writeInt(out, cards.baseAtt[card]);
+        EncounterLog.writeInt(out, cards.baseHp[card]);
+        EncounterLog.writeInt(out, cards.missingHp[card]);
+    }
+
+    // A deck card's current stats are the keys of its nodes
+    private static int readDeckCard(InputStream in, CardStore cards, String[] names, int att, int hp) throws IOException {
+        int id = EncounterLog.readVarint(in);
+        if (id < 0 || id >= names.length) {
+            throw corrupt();
+        }
+        int baseAtt = EncounterLog.readInt(in);
+        int baseHp = EncounterLog.readInt(in);
+        int missingHp = EncounterLog.readInt(in);
+        int card = cards.add(names[id], baseAtt, baseHp);
+        cards.curAtt[card] = att;
+        cards.curHp[card] = hp;
+        cards.missingHp[card] = missingHp;
+        return card;
+    }
+
+    // Fill nodes with the attack nodes in increasing order, walked with an explicit stack, returns their number
+    private static int inOrder(AttackTree deck, AttackNode[] nodes) {
+        AttackNode[] stack = new AttackNode[HealthArena.MAX_HEIGHT];
+        int depth = 0;
+        int count = 0;
+        AttackNode node = deck.root;
+        while (node != null || depth > 0) {
+            while (node != null) {
+                stack[depth++] = node;
+                node = node.left;
+            }
+            node = stack[--depth];
+            nodes[count++] = node;
+            node = node.right;
+        }
+        return count;
+    }
+
+    // Same for the slots of a health tree
+    private static int inOrder(HealthTree tree, int[] slots) {
+        HealthArena a = tree.arena;
+        int[] stack = new int[HealthArena.MAX_HEIGHT];
+        int depth = 0;
+        int count = 0;
+        int node = tree.root;
+        while (node != NIL || depth > 0) {
+            while (node != NIL) {
+                stack[depth++] = node;
+                node = a.left[node];
+            }
+            node = stack[--depth];
+            slots[count++] = node;
+            node = a.right[node];
+        }
+        return count;
+    }
+
+    private static IOException corrupt() {
+        return new IOException("Corrupt snapshot");
+    }
+}
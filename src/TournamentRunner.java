@@ -0,0 +1,209 @@
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// TournamentRunner plays every encounter file of a folder once per candidate policy, all the games at the same
+// time as tasks of a fork-join pool, one independent GameSession per task. The results lines are dropped,
+// only the final scores are kept. It prints the survivor minus stranger score of every file and policy,
+// then per policy: games won, total scores and commands per second of game time, and the wall-clock total.
+// A game that throws is reported and left out of its policy's totals, the other games still count.
+// A file that stops at an invalid command is reported once under the table, not by every game that plays it.
+// A policy is written as the order of the four searches and optionally the revival: "1234" or "2134:full",
+// the revivals are "greedy" (the game's), "full" (no partial revival) and "smallest" (as many cards as fit).
+public class TournamentRunner {
+
+    // One game: a policy on a file
+    private static final class Game extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final String file;
+        final SelectionPolicy selection;
+        final RevivalPolicy revival;
+        final RunStats stats;
+        int survivorPoint;
+        int strangerPoint;
+        Throwable failure;
+        // The command the game stopped at, null if it played the whole file
+        String invalidCommand;
+
+        Game(String file, SelectionPolicy selection, RevivalPolicy revival) {
+            this.file = file;
+            this.selection = selection;
+            this.revival = revival;
+            this.stats = new RunStats(file);
+        }
+
+        @Override
+        protected void compute() {
+            GameSession session = new GameSession();
+            session.setPolicies(selection, revival);
+            try (CommandSource reader = new CommandReader(new FileInputStream(file));
+                 OutputWriter out = new OutputWriter(DISCARD)) {
+                stats.start();
+                stats.finished = Main.run(session, reader, out, stats, false);
+                stats.stop();
+                if (!stats.finished) {
+                    invalidCommand = reader.invalidCommand();
+                }
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                if (session.metrics != null) {
+                    session.metrics.close();
+                }
+            }
+            survivorPoint = session.survivorPoint;
+            strangerPoint = session.strangerPoint;
+        }
+    }
+
+    // Where the result lines go
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    public static void run(String policyList, String inDir) {
+        String[] names = policyList.split(",");
+        SelectionPolicy[] selections = new SelectionPolicy[names.length];
+        RevivalPolicy[] revivals = new RevivalPolicy[names.length];
+        for (int p = 0; p < names.length; p++) {
+            String[] parts = names[p].split(":");
+            try {
+                selections[p] = PriorityOrder.parse(parts[0]);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid policy " + names[p] + ": " + e.getMessage());
+                return;
+            }
+            String revival = parts.length > 1 ? parts[1] : "greedy";
+            if (revival.equals("greedy")) {
+                revivals[p] = GreedyRevival.DEFAULT;
+            } else if (revival.equals("full")) {
+                revivals[p] = GreedyRevival.FULL_ONLY;
+            } else if (revival.equals("smallest")) {
+                revivals[p] = SmallestFirstRevival.INSTANCE;
+            } else {
+                System.out.println("Invalid revival " + revival + ", it is greedy, full or smallest");
+                return;
+            }
+            names[p] = selections[p] + ":" + revivals[p];
+        }
+
+        File[] files = new File(inDir).listFiles();
+        if (files == null) {
+            System.out.println("Input folder not found: " + inDir);
+            return;
+        }
+        // Only the regular files, in name order so the report is stable
+        int count = 0;
+        for (File file : files) {
+            if (file.isFile()) {
+                files[count++] = file;
+            }
+        }
+        files = Arrays.copyOf(files, count);
+        Arrays.sort(files);
+
+        // games[p * count + f] plays policy p on file f
+        final Game[] games = new Game[names.length * count];
+        for (int p = 0; p < names.length; p++) {
+            for (int f = 0; f < count; f++) {
+                games[p * count + f] = new Game(files[f].getPath(), selections[p], revivals[p]);
+            }
+        }
+
+        int threads = SessionPool.defaultThreads();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(games);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        for (int i = 0; i < games.length; i++) {
+            if (games[i].failure != null) {
+                System.out.println("Error playing " + games[i].file + " with " + names[i / count] + ": "
+                    + games[i].failure);
+            }
+        }
+        report(names, files, games, seconds, threads);
+    }
+
+    private static void report(String[] names, File[] files, Game[] games, double seconds, int threads) {
+        int count = files.length;
+        // Survivor minus stranger score, file by policy
+        System.out.printf("%-32s", "File");
+        for (String name : names) {
+            System.out.printf(" %12s", name);
+        }
+        System.out.println();
+        for (int f = 0; f < count; f++) {
+            System.out.printf("%-32s", files[f].getName());
+            for (int p = 0; p < names.length; p++) {
+                Game game = games[p * count + f];
+                if (game.failure != null) {
+                    System.out.printf(" %12s", "failed");
+                } else {
+                    System.out.printf(" %12d", game.survivorPoint - game.strangerPoint);
+                }
+            }
+            System.out.println();
+        }
+        for (int f = 0; f < count; f++) {
+            // Every policy stops at the same line of a file, the first game that got there tells it
+            for (int p = 0; p < names.length; p++) {
+                Game game = games[p * count + f];
+                if (game.invalidCommand != null) {
+                    System.out.println(files[f].getName() + " stopped at the invalid command " + game.invalidCommand);
+                    break;
+                }
+            }
+        }
+        System.out.println();
+
+        System.out.printf("%-16s %8s %14s %14s %14s %14s%n",
+            "Policy", "Won", "Survivor", "Stranger", "Commands", "Commands/s");
+        long allCommands = 0;
+        for (int p = 0; p < names.length; p++) {
+            int won = 0;
+            int played = 0;
+            long survivor = 0;
+            long stranger = 0;
+            long commands = 0;
+            double gameSeconds = 0;
+            for (int f = 0; f < count; f++) {
+                Game game = games[p * count + f];
+                if (game.failure != null) {
+                    continue;
+                }
+                played++;
+                if (game.survivorPoint >= game.strangerPoint) {
+                    won++;
+                }
+                survivor += game.survivorPoint;
+                stranger += game.strangerPoint;
+                commands += game.stats.commands;
+                gameSeconds += game.stats.seconds();
+            }
+            allCommands += commands;
+            System.out.printf("%-16s %5d/%-2d %14d %14d %14d %14.0f%n",
+                names[p], won, played, survivor, stranger, commands, gameSeconds > 0 ? commands / gameSeconds : 0);
+        }
+        System.out.printf("%-32s %14d commands in %.3f s, %.0f commands/s%n",
+            "TOTAL (" + names.length + " policies, " + count + " files, " + threads + " threads)",
+            allCommands, seconds, seconds > 0 ? allCommands / seconds : 0);
+    }
+}